@@ -0,0 +1,82 @@
+package com.example.movieapi.benchmark;
+
+import com.example.movieapi.MovieApiApplication;
+import com.example.movieapi.service.MovieCountService;
+import com.example.movieapi.service.MovieSearchService;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+//boots the application against its own in-memory h2 and fills it with a generated, reproducible catalog
+final class BenchmarkCatalog {
+
+    private static final String[] TITLE_WORDS = {
+            "Dark", "River", "Night", "Return", "Silent", "Empire", "Shadow", "Golden", "Last", "City",
+            "Dream", "Storm", "Winter", "Iron", "Lost", "Secret", "Blue", "Fire", "Star", "House"};
+    private static final String[] FIRST_NAMES = {
+            "Frank", "Sofia", "Akira", "Agnes", "Martin", "Greta", "Wong", "Jane", "Pedro", "Claire"};
+    private static final String[] LAST_NAMES = {
+            "Darabont", "Coppola", "Kurosawa", "Varda", "Scorsese", "Gerwig", "Kar-wai", "Campion", "Almodovar", "Denis"};
+    private static final int INSERT_BATCH = 10_000;
+
+    private BenchmarkCatalog() {
+    }
+
+    //SERVLET => full mvc stack (message converters, hateoas) on a random port
+    static ConfigurableApplicationContext start(String database, WebApplicationType web, String... properties) {
+        List<String> all = new ArrayList<>(List.of("spring.datasource.url=jdbc:h2:mem:" + database + ";DB_CLOSE_DELAY=-1"));
+        all.addAll(List.of(properties));
+        return run(web, all);
+    }
+
+    //application-<profile>.properties as is, only the given properties on top
+    static ConfigurableApplicationContext startProfile(String profile, WebApplicationType web, String... properties) {
+        List<String> all = new ArrayList<>(List.of("spring.profiles.active=" + profile));
+        all.addAll(List.of(properties));
+        return run(web, all);
+    }
+
+    //passed as command line arguments => they win over application.properties
+    //(builder properties() would only be defaults, e.g. show-sql=true would still be on)
+    private static ConfigurableApplicationContext run(WebApplicationType web, List<String> properties) {
+        List<String> args = new ArrayList<>(List.of(
+                "--spring.jpa.show-sql=false",
+                "--server.port=0",
+                "--logging.level.root=WARN",
+                //the benchmarks are the one client hammering the server on purpose
+                "--movieapi.rate-limit.rate=0",
+                "--movieapi.concurrency.initial-limit=0"));
+        for (String property : properties) {
+            args.add("--" + property);
+        }
+        return new SpringApplicationBuilder(MovieApiApplication.class)
+                .web(web)
+                .run(args.toArray(String[]::new));
+    }
+
+    //plain jdbc batches => seeding a million rows takes seconds, not minutes
+    static void seed(ConfigurableApplicationContext context, int rows) {
+        JdbcTemplate jdbcTemplate = context.getBean(JdbcTemplate.class);
+        Random random = new Random(42);
+        List<Object[]> batch = new ArrayList<>(INSERT_BATCH);
+        for (int i = 0; i < rows; i++) {
+            String title = TITLE_WORDS[random.nextInt(TITLE_WORDS.length)] + " "
+                    + TITLE_WORDS[random.nextInt(TITLE_WORDS.length)] + " " + i;
+            String director = FIRST_NAMES[random.nextInt(FIRST_NAMES.length)] + " "
+                    + LAST_NAMES[random.nextInt(LAST_NAMES.length)];
+            batch.add(new Object[]{title, director, 1900 + random.nextInt(125)});
+            if (batch.size() == INSERT_BATCH || i == rows - 1) {
+                jdbcTemplate.batchUpdate("INSERT INTO movies (title, director, \"year\") VALUES (?, ?, ?)", batch);
+                batch.clear();
+            }
+        }
+        //the index and the counts were built at startup, before the rows above existed
+        context.getBean(MovieSearchService.class).rebuildIndex();
+        context.getBean(MovieCountService.class).reconcile();
+    }
+}
@@ -0,0 +1,112 @@
+package com.example.movieapi.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+//a fresh jvm per shot (AOT and CDS only matter there) => time from process start to the first 200 of GET /movies/{id}
+//runs the jar built by mvn -Pfast-startup verify (target/fast-startup), as is ("default"), with the "fast" profile,
+//then with the AOT initializers and the CDS archive of the training run, then also lazily initialized
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 5)
+@Fork(1)
+public class FastStartupBenchmark {
+
+    private static final Path DIRECTORY = Path.of("target", "fast-startup").toAbsolutePath();
+
+    @Param({"default", "fast", "fast-aot-cds", "fast-aot-cds-lazy"})
+    private String mode;
+
+    private HttpClient client;
+    private Process process;
+
+    @Setup(Level.Trial)
+    public void checkBuild() {
+        if (!Files.exists(DIRECTORY.resolve("application.jar")) || !Files.exists(DIRECTORY.resolve("application.jsa"))) {
+            throw new IllegalStateException("No fast-startup build in " + DIRECTORY + ", run mvn -Pfast-startup verify first");
+        }
+        client = HttpClient.newHttpClient();
+    }
+
+    @TearDown(Level.Iteration)
+    public void stop() throws InterruptedException {
+        if (process != null) {
+            process.destroy();
+            process.waitFor();
+            process = null;
+        }
+    }
+
+    @Benchmark
+    public int firstMovie() throws IOException, InterruptedException {
+        int port = freePort();
+        process = new ProcessBuilder(command(port))
+                .directory(DIRECTORY.toFile())
+                .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                .redirectError(ProcessBuilder.Redirect.DISCARD)
+                .start();
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/movies/1")).build();
+        while (true) {
+            if (!process.isAlive()) {
+                throw new IllegalStateException("Application exited with " + process.exitValue());
+            }
+            try {
+                HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+                if (response.statusCode() == 200) {
+                    return response.body().length();
+                }
+            } catch (ConnectException e) {
+                //not listening yet
+            }
+            Thread.sleep(5);
+        }
+    }
+
+    private List<String> command(int port) {
+        List<String> command = new ArrayList<>(List.of(Path.of(System.getProperty("java.home"), "bin", "java").toString()));
+        if (mode.startsWith("fast-aot-cds")) {
+            command.add("-XX:SharedArchiveFile=application.jsa");
+            command.add("-Dspring.aot.enabled=true");
+        }
+        command.addAll(List.of("-jar", "application.jar", "--server.port=" + port, "--logging.level.root=WARN"));
+        if (!mode.equals("default")) {
+            command.add("--spring.profiles.active=fast");
+        }
+        if (mode.endsWith("-lazy")) {
+            command.add("--spring.main.lazy-initialization=true");
+        }
+        return command;
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+}
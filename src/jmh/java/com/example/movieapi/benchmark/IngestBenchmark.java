@@ -0,0 +1,105 @@
+package com.example.movieapi.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+//a burst of POST /add from a feed, sent concurrently => one transaction per request ("sync") or queued and
+//committed in batches ("async", Prefer: respond-async), timed until the last movie of the burst is committed
+//on the prod profile => every commit is a write to the file database, which is what batching saves
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class IngestBenchmark {
+
+    private static final int BURST = 1000;
+
+    @Param({"sync", "async"})
+    private String mode;
+
+    private ConfigurableApplicationContext context;
+    private HttpClient client;
+    private String baseUrl;
+    private long next;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        Path database = Path.of("target", "ingest-benchmark", "movies");
+        for (String suffix : List.of(".mv.db", ".trace.db")) {
+            Files.deleteIfExists(database.resolveSibling(database.getFileName() + suffix));
+        }
+        context = BenchmarkCatalog.startProfile("prod", WebApplicationType.SERVLET,
+                "movieapi.db.path=" + database.toAbsolutePath(), "movieapi.ingest.capacity=" + BURST * 2);
+        client = HttpClient.newHttpClient();
+        baseUrl = "http://localhost:" + context.getEnvironment().getProperty("local.server.port");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    //ops/s = movies committed per second
+    @Benchmark
+    @OperationsPerInvocation(BURST)
+    public int burst() throws Exception {
+        List<CompletableFuture<HttpResponse<String>>> responses = new ArrayList<>(BURST);
+        for (int i = 0; i < BURST; i++) {
+            HttpRequest.Builder request = HttpRequest.newBuilder(URI.create(baseUrl + "/add"))
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString(
+                            "{\"title\":\"Ingest " + next++ + "\",\"director\":\"Bench\",\"year\":2000}"));
+            if (mode.equals("async")) {
+                request.header("Prefer", "respond-async");
+            }
+            responses.add(client.sendAsync(request.build(), HttpResponse.BodyHandlers.ofString()));
+        }
+        int done = 0;
+        long last = 0;
+        for (CompletableFuture<HttpResponse<String>> response : responses) {
+            HttpResponse<String> result = response.join();
+            done += result.statusCode() < 300 ? 1 : 0;
+            String location = result.headers().firstValue("Location").orElse(null);
+            if (location != null) {
+                last = Math.max(last, Long.parseLong(location.substring(location.lastIndexOf('/') + 1)));
+            }
+        }
+        //one writer commits in queue order => the highest ticket committed means the whole burst is
+        if (last > 0) {
+            URI ticket = URI.create(baseUrl + "/ingest/" + last);
+            while (client.send(HttpRequest.newBuilder(ticket).build(), HttpResponse.BodyHandlers.ofString())
+                    .body().contains("QUEUED")) {
+                Thread.onSpinWait();
+            }
+        }
+        return done;
+    }
+}
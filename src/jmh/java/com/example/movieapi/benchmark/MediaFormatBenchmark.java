@@ -0,0 +1,134 @@
+package com.example.movieapi.benchmark;
+
+import com.example.movieapi.codec.MovieProtobufHttpMessageConverter;
+import com.example.movieapi.dto.MovieDTO;
+import com.example.movieapi.repository.MovieRepository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.core.ResolvableType;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.GenericHttpMessageConverter;
+import org.springframework.mock.http.MockHttpInputMessage;
+import org.springframework.mock.http.MockHttpOutputMessage;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+import org.springframework.web.servlet.mvc.method.annotation.RequestMappingHandlerAdapter;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+//one 10k-movie List<MovieDTO> (the /simple shape) through the converters mvc picks for each Accept header
+//=> encode is the server side cost, decode what a client pays, the payload size is printed by the setup
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MediaFormatBenchmark {
+
+    private static final int MOVIES = 10_000;
+    private static final Type MOVIE_LIST = ResolvableType.forClassWithGenerics(List.class, MovieDTO.class).getType();
+
+    //json-pretty => the previous default (INDENT_OUTPUT on every response), now only with ?pretty
+    @Param({"json", "json-pretty", "cbor", "smile", "protobuf"})
+    private String format;
+
+    private ConfigurableApplicationContext context;
+    private GenericHttpMessageConverter<Object> converter;
+    private MediaType mediaType;
+    private List<MovieDTO> movies;
+    private byte[] payload;
+
+    //the json pretty printer follows the current request => every benchmark thread gets one, with ?pretty or not
+    @State(Scope.Thread)
+    public static class RequestState {
+        @Setup(Level.Trial)
+        public void bind(MediaFormatBenchmark benchmark) {
+            RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(benchmark.request()));
+        }
+
+        @TearDown(Level.Trial)
+        public void unbind() {
+            RequestContextHolder.resetRequestAttributes();
+        }
+    }
+
+    @Setup(Level.Trial)
+    @SuppressWarnings("unchecked")
+    public void setUp() throws IOException {
+        context = BenchmarkCatalog.start("format_bench", WebApplicationType.SERVLET);
+        BenchmarkCatalog.seed(context, MOVIES);
+        movies = context.getBean(MovieRepository.class).findPageAfter(0L, null, null, null, PageRequest.of(0, MOVIES));
+
+        mediaType = switch (format) {
+            case "cbor" -> MediaType.APPLICATION_CBOR;
+            case "smile" -> new MediaType("application", "x-jackson-smile");
+            case "protobuf" -> MovieProtobufHttpMessageConverter.APPLICATION_PROTOBUF;
+            default -> MediaType.APPLICATION_JSON;
+        };
+        //first match in mvc's order => the converter that serves the request in production
+        converter = (GenericHttpMessageConverter<Object>) context.getBean(RequestMappingHandlerAdapter.class)
+                .getMessageConverters().stream()
+                .filter(candidate -> candidate instanceof GenericHttpMessageConverter<?> generic
+                        && generic.canWrite(MOVIE_LIST, List.class, mediaType))
+                .findFirst()
+                .orElseThrow();
+
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request()));
+        try {
+            payload = encode();
+        } finally {
+            RequestContextHolder.resetRequestAttributes();
+        }
+        System.out.printf("%n%s: %,d bytes for %,d movies%n", format, payload.length, movies.size());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    private MockHttpServletRequest request() {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/simple");
+        if (format.equals("json-pretty")) {
+            request.setParameter("pretty", "true");
+        }
+        return request;
+    }
+
+    @Benchmark
+    public byte[] encode(RequestState request) throws IOException {
+        return encode();
+    }
+
+    private byte[] encode() throws IOException {
+        MockHttpOutputMessage output = new MockHttpOutputMessage();
+        converter.write(movies, MOVIE_LIST, mediaType, output);
+        return output.getBodyAsBytes();
+    }
+
+    @Benchmark
+    public Object decode() throws IOException {
+        MockHttpInputMessage input = new MockHttpInputMessage(payload);
+        input.getHeaders().setContentType(mediaType);
+        return converter.read(MOVIE_LIST, null, input);
+    }
+}
@@ -0,0 +1,72 @@
+package com.example.movieapi.benchmark;
+
+import com.example.movieapi.model.Movie;
+import com.example.movieapi.repository.MovieRepository;
+import com.example.movieapi.search.SearchResult;
+import com.example.movieapi.service.MovieSearchService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.domain.PageRequest;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+//GET /movies/search (inverted index) against the LIKE '%q%' query it replaces
+//SampleTime => the report carries p50/p99/p99.9 per query
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+//5M rows => the table and the index need more than the default heap
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+public class MovieSearchBenchmark {
+
+    @Param({"100000", "1000000", "5000000"})
+    private int rows;
+
+    //one-letter prefix, word prefix, full word, full word + prefix of another (the other word checked per candidate)
+    @Param({"d", "dar", "winter", "dark win"})
+    private String query;
+
+    private ConfigurableApplicationContext context;
+    private MovieSearchService movieSearchService;
+    private MovieRepository movieRepository;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        //servlet like the others => the web-only beans (request limit filter) have what they need
+        context = BenchmarkCatalog.start("search_bench", WebApplicationType.SERVLET);
+        BenchmarkCatalog.seed(context, rows);
+        movieSearchService = context.getBean(MovieSearchService.class);
+        movieRepository = context.getBean(MovieRepository.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public SearchResult invertedIndex() {
+        return movieSearchService.search(query, 20, 0);
+    }
+
+    @Benchmark
+    public List<Movie> likeQuery() {
+        return movieRepository.findByTitleContainingIgnoreCaseOrDirectorContainingIgnoreCase(query, query, PageRequest.of(0, 20));
+    }
+}
@@ -0,0 +1,188 @@
+package com.example.movieapi.benchmark;
+
+import com.example.movieapi.controller.MovieController;
+import com.example.movieapi.controller.MovieLinks;
+import com.example.movieapi.dto.MovieDTO;
+import com.example.movieapi.dto.MovieFilter;
+import com.example.movieapi.dto.MoviePage;
+import com.example.movieapi.model.Movie;
+import com.example.movieapi.repository.MovieRepository;
+import com.example.movieapi.service.MovieService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.hateoas.CollectionModel;
+import org.springframework.hateoas.Link;
+import org.springframework.hateoas.MediaTypes;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.mock.http.MockHttpOutputMessage;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+import org.springframework.web.servlet.mvc.method.annotation.RequestMappingHandlerAdapter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongFunction;
+
+import static org.springframework.hateoas.server.mvc.WebMvcLinkBuilder.linkTo;
+import static org.springframework.hateoas.server.mvc.WebMvcLinkBuilder.methodOn;
+
+//hot paths behind the read endpoints at growing catalog sizes => one page (PAGE_SIZE rows) per operation
+//results land in target/jmh-result.json (see the benchmark profile in pom.xml)
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MovieServiceBenchmark {
+
+    private static final int PAGE_SIZE = MovieService.MAX_PAGE_SIZE;
+
+    @Param({"1000", "100000", "1000000"})
+    private int rows;
+
+    private ConfigurableApplicationContext context;
+    private MovieService movieService;
+    private MovieRepository movieRepository;
+    private MovieLinks movieLinks;
+    private HttpMessageConverter<Object> halConverter;
+    //keyset cursor in the middle of the table => shows that deep pages cost the same as the first one
+    private long middleCursor;
+    //ids of the first page => the "hot titles" getMovieById keeps asking for
+    private long[] hotIds;
+    private List<Movie> entities;
+    private CollectionModel<MovieDTO> collection;
+
+    //linkTo() resolves the base uri from the current request => every benchmark thread gets a fake one
+    @State(Scope.Thread)
+    public static class RequestState {
+        @Setup(Level.Trial)
+        public void bind() {
+            MockHttpServletRequest request = new MockHttpServletRequest("GET", "/movies");
+            request.setServerPort(9999);
+            RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request));
+        }
+
+        @TearDown(Level.Trial)
+        public void unbind() {
+            RequestContextHolder.resetRequestAttributes();
+        }
+    }
+
+    @Setup(Level.Trial)
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        context = BenchmarkCatalog.start("service_bench", WebApplicationType.SERVLET);
+        BenchmarkCatalog.seed(context, rows);
+        movieService = context.getBean(MovieService.class);
+        movieRepository = context.getBean(MovieRepository.class);
+        movieLinks = context.getBean(MovieLinks.class);
+
+        //the converter mvc picks for /movies => same hal serialization as production
+        halConverter = (HttpMessageConverter<Object>) context.getBean(RequestMappingHandlerAdapter.class)
+                .getMessageConverters().stream()
+                .filter(converter -> converter.canWrite(CollectionModel.class, MediaTypes.HAL_JSON))
+                .findFirst()
+                .orElseThrow();
+
+        entities = new ArrayList<>(movieRepository.findAll(PageRequest.of(0, PAGE_SIZE, Sort.by("id"))).getContent());
+        //one id from the index => no rows / 2 dtos built just to take the last one
+        middleCursor = context.getBean(JdbcTemplate.class).queryForObject(
+                "SELECT id FROM movies ORDER BY id OFFSET ? ROWS FETCH FIRST 1 ROWS ONLY", Long.class, rows / 2);
+        hotIds = entities.stream().mapToLong(Movie::getId).toArray();
+
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/movies");
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request));
+        try {
+            MoviePage page = movieService.getAllMoviesSimple(new MovieFilter(), null, null, PAGE_SIZE);
+            movieLinks.addSelfLinks(page.getMovies());
+            collection = CollectionModel.of(page.getMovies());
+        } finally {
+            RequestContextHolder.resetRequestAttributes();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public MoviePage getAllMovies(RequestState request) {
+        //what GET /movies does for a changed page
+        MoviePage page = movieService.getAllMoviesSimple(new MovieFilter(), middleCursor, null, PAGE_SIZE);
+        movieLinks.addSelfLinks(page.getMovies());
+        return page;
+    }
+
+    @Benchmark
+    public MoviePage getAllMoviesSimple() {
+        return movieService.getAllMoviesSimple(new MovieFilter(), middleCursor, null, PAGE_SIZE);
+    }
+
+    //cache hits once warmed up
+    @Benchmark
+    public MovieDTO getMovieById() {
+        return movieService.getMovieById(hotIds[ThreadLocalRandom.current().nextInt(hotIds.length)]);
+    }
+
+    @Benchmark
+    public List<MovieDTO> mapToDto() {
+        List<MovieDTO> dtos = new ArrayList<>(entities.size());
+        for (Movie movie : entities) {
+            dtos.add(new MovieDTO(movie.getId(), movie.getTitle(), movie.getDirector(), movie.getYear()));
+        }
+        return dtos;
+    }
+
+    @Benchmark
+    public List<MovieDTO> mapToDtoWithLinks(RequestState request) {
+        List<MovieDTO> dtos = new ArrayList<>(entities.size());
+        for (Movie movie : entities) {
+            MovieDTO dto = new MovieDTO(movie.getId(), movie.getTitle(), movie.getDirector(), movie.getYear());
+            dto.add(linkTo(methodOn(MovieController.class).getMovieById(movie.getId(), null)).withSelfRel());
+            dtos.add(dto);
+        }
+        return dtos;
+    }
+
+    //same hrefs as mapToDtoWithLinks, built from the precompiled template
+    @Benchmark
+    public List<MovieDTO> mapToDtoWithMovieLinks(RequestState request) {
+        LongFunction<Link> selfLinks = movieLinks.selfLinks();
+        List<MovieDTO> dtos = new ArrayList<>(entities.size());
+        for (Movie movie : entities) {
+            MovieDTO dto = new MovieDTO(movie.getId(), movie.getTitle(), movie.getDirector(), movie.getYear());
+            dto.add(selfLinks.apply(movie.getId()));
+            dtos.add(dto);
+        }
+        return dtos;
+    }
+
+    @Benchmark
+    public byte[] serializeCollectionModel() throws IOException {
+        MockHttpOutputMessage output = new MockHttpOutputMessage();
+        halConverter.write(collection, MediaTypes.HAL_JSON, output);
+        return output.getBodyAsBytes();
+    }
+}
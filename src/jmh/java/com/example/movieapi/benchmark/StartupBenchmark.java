@@ -0,0 +1,133 @@
+package com.example.movieapi.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+
+//"prod" profile on a file database => how long a restart takes and how slow the very first requests are
+//one shot per iteration, the database is generated once under target/startup-benchmark and reused by later runs
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+public class StartupBenchmark {
+
+    @Param({"5000000"})
+    private int rows;
+
+    private Path database;
+    //a real id in the middle of the table => the sequence hands out 1, 51, 101... so rows / 2 is usually not one
+    private long middleId;
+    private ConfigurableApplicationContext restarted;
+
+    @Setup(Level.Trial)
+    public void createDatabase() throws IOException, SQLException {
+        database = Path.of("target", "startup-benchmark", "movies-" + rows).toAbsolutePath();
+        if (!Files.exists(database.resolveSibling(database.getFileName() + ".mv.db"))) {
+            Files.createDirectories(database.getParent());
+            try (ConfigurableApplicationContext context = start(database)) {
+                BenchmarkCatalog.seed(context, rows);
+            }
+        }
+        //plain jdbc, closed again before the benchmark opens the file
+        try (Connection connection = DriverManager.getConnection("jdbc:h2:file:" + database, "sa", "");
+             PreparedStatement statement = connection.prepareStatement(
+                     "SELECT id FROM movies ORDER BY id OFFSET ? ROWS FETCH FIRST 1 ROWS ONLY")) {
+            statement.setLong(1, rows / 2);
+            try (ResultSet result = statement.executeQuery()) {
+                if (!result.next()) {
+                    throw new IllegalStateException("No movie at offset " + rows / 2 + " in " + database);
+                }
+                middleId = result.getLong(1);
+            }
+        }
+    }
+
+    //application already up, nothing served yet => what the first client after a deploy sees
+    @State(Scope.Benchmark)
+    public static class RunningApp {
+        private ConfigurableApplicationContext context;
+        private HttpClient client;
+        private String baseUri;
+
+        @Setup(Level.Iteration)
+        public void start(StartupBenchmark benchmark) {
+            context = StartupBenchmark.start(benchmark.database);
+            client = HttpClient.newHttpClient();
+            baseUri = "http://localhost:" + context.getEnvironment().getProperty("local.server.port");
+        }
+
+        @TearDown(Level.Iteration)
+        public void stop() {
+            context.close();
+        }
+
+        //anything but a 200 fails the run => an error page would be measured otherwise
+        int get(String path) throws IOException, InterruptedException {
+            HttpResponse<byte[]> response = client.send(HttpRequest.newBuilder(URI.create(baseUri + path)).build(),
+                    HttpResponse.BodyHandlers.ofByteArray());
+            if (response.statusCode() != 200) {
+                throw new IllegalStateException("GET " + path + " answered " + response.statusCode());
+            }
+            return response.body().length;
+        }
+    }
+
+    private static ConfigurableApplicationContext start(Path database) {
+        return BenchmarkCatalog.startProfile("prod", WebApplicationType.SERVLET, "movieapi.db.path=" + database);
+    }
+
+    //context refresh + schema.sql + the ApplicationReadyEvent work (search index, counts)
+    @Benchmark
+    public ConfigurableApplicationContext restart() {
+        restarted = start(database);
+        return restarted;
+    }
+
+    @TearDown(Level.Iteration)
+    public void stopRestarted() {
+        if (restarted != null) {
+            restarted.close();
+            restarted = null;
+        }
+    }
+
+    //cold jit, empty caches, first hibernate query plans
+    @Benchmark
+    public int firstPage(RunningApp app) throws IOException, InterruptedException {
+        return app.get("/movies?limit=100&after=" + middleId);
+    }
+
+    @Benchmark
+    public int firstMovie(RunningApp app) throws IOException, InterruptedException {
+        return app.get("/movies/" + middleId);
+    }
+}
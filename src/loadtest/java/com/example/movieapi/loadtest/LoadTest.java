@@ -0,0 +1,300 @@
+package com.example.movieapi.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import org.springframework.boot.convert.DurationStyle;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.net.ConnectException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+//whole stack under concurrent mixed traffic (tomcat, filters, MovieController, caches, hibernate, h2) => starts the
+//packaged application jar in its own jvm (app.jar), seeds the catalog through POST /movies/bulk, sends requests at a
+//fixed rate (open model) from an async client, records the latency per route in HdrHistograms and checks them against
+//the gates of loadtest.properties. client and server never share a heap, a gc or jit threads
+//exit code 1 => a gate was missed, the maven build fails with it
+public final class LoadTest {
+
+    //responses still outstanding after the schedule ended get this long, then count as errors
+    private static final long DRAIN_NANOS = TimeUnit.SECONDS.toNanos(30);
+    private static final Path REPORT_DIRECTORY = Path.of("target", "loadtest");
+    //movies per POST /movies/bulk while seeding
+    private static final int SEED_CHUNK = 10_000;
+
+    //latencies in microseconds, resized as needed => no upper bound to guess
+    //errors per status code, 0 = no response (connection failed)
+    private static final class RouteStats {
+        private final Histogram latency = new ConcurrentHistogram(3);
+        private final Map<Integer, LongAdder> errors = new ConcurrentSkipListMap<>();
+
+        private void error(int status) {
+            errors.computeIfAbsent(status, s -> new LongAdder()).increment();
+        }
+
+        private long errorCount() {
+            return errors.values().stream().mapToLong(LongAdder::sum).sum();
+        }
+    }
+
+    private final Properties settings;
+    private final Map<Workload.Route, RouteStats> stats = new EnumMap<>(Workload.Route.class);
+    private final LongAdder outstanding = new LongAdder();
+    private final AtomicLong lastCompletion = new AtomicLong();
+
+    private LoadTest(Properties settings) {
+        this.settings = settings;
+        for (Workload.Route route : Workload.Route.values()) {
+            stats.put(route, new RouteStats());
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        Properties settings = new Properties();
+        try (InputStream in = LoadTest.class.getResourceAsStream("/loadtest.properties")) {
+            settings.load(in);
+        }
+        List<String> applicationArgs = new ArrayList<>(List.of(
+                "--spring.datasource.url=jdbc:h2:mem:loadtest;DB_CLOSE_DELAY=-1",
+                "--spring.jpa.show-sql=false",
+                "--logging.level.root=WARN",
+                "--management.endpoint.health.probes.enabled=true"));
+        for (String arg : args) {
+            if (arg.startsWith("--")) {
+                applicationArgs.add(arg);
+            } else if (!arg.isBlank()) {
+                String[] setting = arg.split("=", 2);
+                settings.setProperty(setting[0], setting[1]);
+            }
+        }
+        //the keys the workload sends => one rate limit bucket per client, not one for all of localhost
+        applicationArgs.add("--movieapi.api-keys=" + IntStream.range(0, Integer.parseInt(settings.getProperty("clients")))
+                .mapToObj(Workload::apiKey).collect(Collectors.joining(",")));
+
+        List<String> failures;
+        int port = freePort();
+        applicationArgs.add("--server.port=" + port);
+        Process application = startApplication(settings, applicationArgs);
+        try {
+            String baseUri = "http://localhost:" + port;
+            awaitReady(application, baseUri);
+            failures = new LoadTest(settings).run(baseUri);
+        } finally {
+            //SIGTERM => graceful shutdown, as in a deployment
+            application.destroy();
+            if (!application.waitFor(60, TimeUnit.SECONDS)) {
+                application.destroyForcibly();
+            }
+        }
+        if (!failures.isEmpty()) {
+            failures.forEach(failure -> System.out.println("FAILED: " + failure));
+            System.exit(1);
+        }
+        System.out.println("All load test gates passed");
+    }
+
+    //same java as this jvm, output in target/loadtest/application.log
+    private static Process startApplication(Properties settings, List<String> applicationArgs) throws IOException {
+        Path jar = Path.of(settings.getProperty("app.jar"));
+        if (!Files.exists(jar)) {
+            throw new IllegalStateException(jar + " not found, package the application first (mvn -Ploadtest package exec:exec)");
+        }
+        Files.createDirectories(REPORT_DIRECTORY);
+        List<String> command = new ArrayList<>();
+        command.add(ProcessHandle.current().info().command().orElse("java"));
+        command.addAll(Arrays.asList(settings.getProperty("app.jvm-args", "").trim().split("\\s+")));
+        command.removeIf(String::isEmpty);
+        command.add("-jar");
+        command.add(jar.toString());
+        command.addAll(applicationArgs);
+        System.out.println("Starting " + String.join(" ", command));
+        return new ProcessBuilder(command)
+                .redirectErrorStream(true)
+                .redirectOutput(REPORT_DIRECTORY.resolve("application.log").toFile())
+                .start();
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    //readiness UP => published after the ApplicationReadyEvent work (index, counts) is done
+    private static void awaitReady(Process application, String baseUri) throws IOException, InterruptedException {
+        HttpClient client = HttpClient.newHttpClient();
+        HttpRequest health = HttpRequest.newBuilder(URI.create(baseUri + "/actuator/health/readiness")).build();
+        long deadline = System.nanoTime() + TimeUnit.MINUTES.toNanos(2);
+        while (System.nanoTime() < deadline) {
+            if (!application.isAlive()) {
+                throw new IllegalStateException("The application exited with " + application.exitValue()
+                        + ", see " + REPORT_DIRECTORY.resolve("application.log"));
+            }
+            try {
+                if (client.send(health, HttpResponse.BodyHandlers.discarding()).statusCode() == 200) {
+                    return;
+                }
+            } catch (ConnectException e) {
+                //not listening yet
+            }
+            Thread.sleep(200);
+        }
+        throw new IllegalStateException("The application was not ready within 2 minutes");
+    }
+
+    private List<String> run(String baseUri) throws IOException, InterruptedException {
+        HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+        long[] ids = seed(client, baseUri, Integer.parseInt(settings.getProperty("catalog")));
+        double rate = Double.parseDouble(settings.getProperty("rate"));
+        long warmup = DurationStyle.detectAndParse(settings.getProperty("warmup")).toNanos();
+        long duration = DurationStyle.detectAndParse(settings.getProperty("duration")).toNanos();
+        Workload workload = new Workload(baseUri, ids, settings);
+        System.out.printf("%d movies, %.0f requests/s, %d s warmup + %d s measured%n", ids.length, rate,
+                TimeUnit.NANOSECONDS.toSeconds(warmup), TimeUnit.NANOSECONDS.toSeconds(duration));
+
+        long start = System.nanoTime();
+        long measureFrom = start + warmup;
+        long end = measureFrom + duration;
+        long due = start;
+        long measured = 0;
+        while (true) {
+            due += workload.nextGapNanos(rate);
+            if (due >= end) {
+                break;
+            }
+            long wait = due - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            boolean record = due >= measureFrom;
+            measured += record ? 1 : 0;
+            send(client, workload, workload.next(), due, record);
+        }
+        //measured requests still in flight are waited for => a slow tail shows in the latency and the throughput
+        long drainUntil = System.nanoTime() + DRAIN_NANOS;
+        while (outstanding.sum() > 0 && System.nanoTime() < drainUntil) {
+            Thread.sleep(10);
+        }
+        long unanswered = outstanding.sum();
+        double throughput = (measured - unanswered) * 1e9 / (Math.max(lastCompletion.get(), end) - measureFrom);
+        return report(rate, measured, unanswered, throughput);
+    }
+
+    private void send(HttpClient client, Workload workload, Workload.Call call, long due, boolean record) {
+        if (record) {
+            outstanding.increment();
+        }
+        client.sendAsync(call.request(), HttpResponse.BodyHandlers.ofString()).whenComplete((response, error) -> {
+            long now = System.nanoTime();
+            workload.completed(call, response);
+            if (!record) {
+                return;
+            }
+            RouteStats route = stats.get(call.route());
+            //from when it was due => time spent waiting for the client to get to it is part of the latency
+            route.latency.recordValue(TimeUnit.NANOSECONDS.toMicros(now - due));
+            if (error != null || response.statusCode() >= 300) {
+                route.error(error != null ? 0 : response.statusCode());
+            }
+            lastCompletion.accumulateAndGet(now, Math::max);
+            outstanding.decrement();
+        });
+    }
+
+    private List<String> report(double rate, long measured, long unanswered, double throughput) throws IOException {
+        List<String> failures = new ArrayList<>();
+        Files.createDirectories(REPORT_DIRECTORY);
+        long errors = unanswered;
+        System.out.printf("%-12s %9s %7s %9s %9s %9s %9s %9s%n",
+                "route", "requests", "errors", "p50 ms", "p90 ms", "p99 ms", "max ms", "p99 gate");
+        for (Map.Entry<Workload.Route, RouteStats> entry : stats.entrySet()) {
+            String key = entry.getKey().key;
+            Histogram latency = entry.getValue().latency;
+            errors += entry.getValue().errorCount();
+            String gate = settings.getProperty("p99." + key);
+            System.out.printf("%-12s %9d %7d %9.1f %9.1f %9.1f %9.1f %9s%n", key, latency.getTotalCount(),
+                    entry.getValue().errorCount(), millis(latency, 50), millis(latency, 90), millis(latency, 99),
+                    latency.getMaxValue() / 1000.0, gate == null ? "-" : gate);
+            if (!entry.getValue().errors.isEmpty()) {
+                System.out.println("  errors by status " + entry.getValue().errors);
+            }
+            if (gate != null && latency.getTotalCount() > 0 && millis(latency, 99) > Double.parseDouble(gate)) {
+                failures.add(String.format("p99 of %s is %.1f ms, the gate is %s ms", key, millis(latency, 99), gate));
+            }
+            //full distribution per route => plot or diff against an earlier run (HdrHistogram's .hgrm format)
+            try (PrintStream out = new PrintStream(Files.newOutputStream(REPORT_DIRECTORY.resolve(key + ".hgrm")))) {
+                latency.outputPercentileDistribution(out, 1000.0);
+            }
+        }
+        System.out.printf("throughput %.1f requests/s (rate %.0f), %d errors of %d requests, %d unanswered%n",
+                throughput, rate, errors, measured, unanswered);
+
+        double minThroughput = rate * Double.parseDouble(settings.getProperty("min-throughput-ratio"));
+        if (throughput < minThroughput) {
+            failures.add(String.format("throughput is %.1f requests/s, the gate is %.1f", throughput, minThroughput));
+        }
+        double maxErrors = measured * Double.parseDouble(settings.getProperty("max-error-ratio"));
+        if (errors > maxErrors) {
+            failures.add(String.format("%d errors, the gate is %.0f", errors, maxErrors));
+        }
+        return failures;
+    }
+
+    private static double millis(Histogram latency, double percentile) {
+        return latency.getValueAtPercentile(percentile) / 1000.0;
+    }
+
+    //ndjson through POST /movies/bulk, a chunk per request => the index and the counts follow as for any import
+    //=> the ids of the catalog, what the reads pick from (the sequence hands them out with gaps)
+    private static long[] seed(HttpClient client, String baseUri, int movies) throws IOException, InterruptedException {
+        ObjectMapper objectMapper = new ObjectMapper();
+        long[] ids = new long[movies];
+        int seeded = 0;
+        while (seeded < movies) {
+            StringBuilder chunk = new StringBuilder();
+            for (int i = seeded; i < Math.min(seeded + SEED_CHUNK, movies); i++) {
+                chunk.append(objectMapper.writeValueAsString(Map.of(
+                        "title", "Catalog Movie " + i, "director", "Director " + i % 1000, "year", 1900 + i % 125)));
+                chunk.append('\n');
+            }
+            HttpResponse<String> response = client.send(HttpRequest.newBuilder(URI.create(baseUri + "/movies/bulk"))
+                    .header("Content-Type", "application/x-ndjson")
+                    .header("X-API-Key", Workload.apiKey(0))
+                    .POST(HttpRequest.BodyPublishers.ofString(chunk.toString()))
+                    .build(), HttpResponse.BodyHandlers.ofString());
+            if (response.statusCode() != 200) {
+                throw new IllegalStateException("Seeding failed with " + response.statusCode() + ": " + response.body());
+            }
+            for (JsonNode result : objectMapper.readTree(response.body())) {
+                if (!"ACCEPTED".equals(result.path("status").asText())) {
+                    throw new IllegalStateException("Seeding failed: " + result);
+                }
+                ids[seeded++] = result.path("id").asLong();
+            }
+        }
+        Arrays.sort(ids);
+        return ids;
+    }
+}
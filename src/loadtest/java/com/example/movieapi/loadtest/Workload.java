@@ -0,0 +1,144 @@
+package com.example.movieapi.loadtest;
+
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.Properties;
+import java.util.Random;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+//the mixed traffic of the load test => which route comes next, against which movie, as which client
+//only called from the scheduler thread (the Random), completions come back on the http client's threads
+final class Workload {
+
+    enum Route {
+        GET_MOVIE("get-movie"), LIST_MOVIES("list-movies"), ADD("add"), UPDATE("update"), DELETE("delete");
+
+        final String key;
+
+        Route(String key) {
+            this.key = key;
+        }
+    }
+
+    //one due request
+    record Call(Route route, HttpRequest request, Long movieId) {}
+
+    private static final Pattern ID = Pattern.compile("\"id\"\\s*:\\s*(\\d+)");
+
+    private final String baseUrl;
+    private final long[] catalogIds;
+    private final int clients;
+    private final Random random;
+    //cumulative shares out of 100, in Route order
+    private final int[] mix = new int[Route.values().length];
+    //movies added by this run and not deleted => what updates and deletes work on, a movie is taken out while
+    //a request on it is in flight so an update never races the delete of the same movie
+    private final ConcurrentLinkedDeque<Long> added = new ConcurrentLinkedDeque<>();
+    private long nextTitle;
+
+    Workload(String baseUrl, long[] catalogIds, Properties settings) {
+        this.baseUrl = baseUrl;
+        this.catalogIds = catalogIds;
+        this.clients = Integer.parseInt(settings.getProperty("clients"));
+        this.random = new Random(Long.parseLong(settings.getProperty("seed")));
+        int total = 0;
+        for (Route route : Route.values()) {
+            total += Integer.parseInt(settings.getProperty("mix." + route.key, "0"));
+            mix[route.ordinal()] = total;
+        }
+        if (total != 100) {
+            throw new IllegalArgumentException("mix.* must add up to 100, not " + total);
+        }
+    }
+
+    //exponential gaps => Poisson arrivals at the given rate
+    long nextGapNanos(double rate) {
+        return (long) (-Math.log(1 - random.nextDouble()) * 1e9 / rate);
+    }
+
+    Call next() {
+        int draw = random.nextInt(100);
+        Route route = Route.GET_MOVIE;
+        for (Route candidate : Route.values()) {
+            if (draw < mix[candidate.ordinal()]) {
+                route = candidate;
+                break;
+            }
+        }
+        HttpRequest.Builder request = HttpRequest.newBuilder()
+                .header("X-API-Key", apiKey(random.nextInt(clients)));
+        switch (route) {
+            case GET_MOVIE -> {
+                return new Call(route, request.uri(uri("/movies/" + randomCatalogId())).build(), null);
+            }
+            case LIST_MOVIES -> {
+                return new Call(route, request.uri(uri("/movies?limit=100&after=" + randomCatalogId())).build(), null);
+            }
+            case UPDATE, DELETE -> {
+                Long id = added.pollFirst();
+                if (id != null) {
+                    request.uri(uri(route == Route.UPDATE ? "/update/" + id : "/delete/" + id));
+                    if (route == Route.UPDATE) {
+                        request.header("Content-Type", "application/json").PUT(HttpRequest.BodyPublishers.ofString(
+                                movieJson("Load Movie " + id, 1900 + random.nextInt(125))));
+                    } else {
+                        request.DELETE();
+                    }
+                    return new Call(route, request.build(), id);
+                }
+                //nothing added yet => an add instead, the mix evens out once the run is going
+            }
+            default -> {
+            }
+        }
+        return new Call(Route.ADD, request.uri(uri("/add"))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(movieJson("Load Added " + nextTitle++, 1900 + random.nextInt(125))))
+                .build(), null);
+    }
+
+    //back into the pool: added movies and updated ones (failed deletes too, the movie may still be there)
+    void completed(Call call, HttpResponse<String> response) {
+        if (response == null) {
+            if (call.movieId() != null) {
+                added.addLast(call.movieId());
+            }
+            return;
+        }
+        switch (call.route()) {
+            case ADD -> {
+                Matcher id = ID.matcher(response.body());
+                if (response.statusCode() == 201 && id.find()) {
+                    added.addLast(Long.parseLong(id.group(1)));
+                }
+            }
+            case UPDATE -> added.addLast(call.movieId());
+            case DELETE -> {
+                if (response.statusCode() >= 300) {
+                    added.addLast(call.movieId());
+                }
+            }
+            default -> {
+            }
+        }
+    }
+
+    static String apiKey(int client) {
+        return "load-" + client;
+    }
+
+    private long randomCatalogId() {
+        return catalogIds[random.nextInt(catalogIds.length)];
+    }
+
+    private URI uri(String path) {
+        return URI.create(baseUrl + path);
+    }
+
+    private static String movieJson(String title, int year) {
+        return "{\"title\":\"" + title + "\",\"director\":\"Load Director\",\"year\":" + year + "}";
+    }
+}
@@ -2,8 +2,12 @@ package com.example.movieapi;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
+@EnableCaching //turns on the cache auto-configuration (caffeine, see application.properties)
+@EnableScheduling //periodic reconciliation of the movie counts (MovieCountService)
 public class MovieApiApplication {
 
 	public static void main(String[] args) {
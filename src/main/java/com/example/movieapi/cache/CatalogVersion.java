@@ -0,0 +1,40 @@
+package com.example.movieapi.cache;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+//bumped by every write path once its transaction has committed => whatever is derived from whole listings
+//(PagePayloadCache) knows it is stale without tracking which rows it holds
+//bumping before the commit would let a reader cache the old rows under the new version
+@Component
+public class CatalogVersion {
+
+    private final AtomicLong version = new AtomicLong();
+    //with a replica (movieapi.replica.url) => how long after a bump its reads may still miss the write, 0 without
+    private final long lagToleranceNanos;
+    //the start counts as a change => the replica may still be catching up with the previous run
+    private volatile long bumpedAt = System.nanoTime();
+
+    public CatalogVersion(@Value("${movieapi.replica.url:}") String replicaUrl,
+                          @Value("${movieapi.replica.lag-tolerance}") Duration lagTolerance) {
+        this.lagToleranceNanos = replicaUrl.isEmpty() ? 0 : lagTolerance.toNanos();
+    }
+
+    public long current() {
+        return version.get();
+    }
+
+    public void bump() {
+        version.incrementAndGet();
+        bumpedAt = System.nanoTime();
+    }
+
+    //true => a shared cache filled now has to be filled from the primary (DataSourceRoute),
+    //a stale replica read would be kept under the new version
+    public boolean replicaMayLag() {
+        return System.nanoTime() - bumpedAt < lagToleranceNanos;
+    }
+}
@@ -0,0 +1,239 @@
+package com.example.movieapi.cache;
+
+import com.example.movieapi.datasource.DataSourceRoute;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.filter.ServerHttpObservationFilter;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+//GET /simple and GET /movies pages kept as finished responses => a repeated request is answered from these bytes
+//without reaching the controller, hibernate or jackson (what the catalog looked like, in whichever format was asked)
+//entries are keyed by the catalog version: a write bumps it, older entries are never read again and age out
+//(expire-after-write, as for the "movies" cache => a quiet catalog does not hold dead pages until the size bound)
+@Component
+public class PagePayloadCache extends OncePerRequestFilter {
+
+    private static final Set<String> PATHS = Set.of("/simple", "/movies");
+    //below this gzip saves less than it costs the client to inflate
+    private static final int MIN_GZIP_SIZE = 1024;
+    private static final String GZIP = "gzip";
+    //written by this filter for every response, never replayed from an entry
+    private static final Set<String> OWN_HEADERS = caseInsensitive(HttpHeaders.CONTENT_TYPE, HttpHeaders.CONTENT_LENGTH,
+            HttpHeaders.CONTENT_ENCODING, HttpHeaders.TRANSFER_ENCODING, HttpHeaders.ETAG, HttpHeaders.DATE);
+
+    private final CatalogVersion catalogVersion;
+    private final Cache<PayloadKey, Payload> payloads;
+    //max-size=0 => the filter steps aside, pages are built (and compressed by tomcat) on every request
+    private final boolean enabled;
+
+    //url with its query (filters, cursor, limit, ?pretty) and host (the hateoas links are absolute),
+    //Accept for the format => Accept-Encoding is not part of it, both encodings live in the same entry
+    private record PayloadKey(long catalogVersion, String url, String accept) {}
+
+    //the same bytes are written to every client, nothing is encoded or copied per request
+    private record Payload(String contentType, List<Map.Entry<String, String>> headers, String etag,
+                           byte[] identity, byte[] gzip) {
+        int weight() {
+            return identity.length + (gzip == null ? 0 : gzip.length);
+        }
+    }
+
+    public PagePayloadCache(CatalogVersion catalogVersion, MeterRegistry registry,
+                            @Value("${movieapi.payload-cache.max-size}") DataSize maxSize,
+                            @Value("${movieapi.payload-cache.expire-after-write}") Duration expireAfterWrite) {
+        this.catalogVersion = catalogVersion;
+        this.enabled = maxSize.toBytes() > 0;
+        this.payloads = Caffeine.newBuilder()
+                .maximumWeight(maxSize.toBytes())
+                .weigher((PayloadKey key, Payload payload) -> payload.weight())
+                .expireAfterWrite(expireAfterWrite)
+                .recordStats()
+                .build();
+        //cache.gets{cache=payloads,result=hit|miss}, next to the "movies" cache
+        CaffeineCacheMetrics.monitor(registry, payloads, "payloads");
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !enabled || !HttpMethod.GET.matches(request.getMethod()) || !PATHS.contains(request.getRequestURI());
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        //read before the controller runs => a write committing meanwhile leaves this entry under the old version
+        String query = request.getQueryString();
+        PayloadKey key = new PayloadKey(catalogVersion.current(),
+                query == null ? request.getRequestURL().toString() : request.getRequestURL() + "?" + query,
+                request.getHeader(HttpHeaders.ACCEPT));
+
+        Payload payload = payloads.getIfPresent(key);
+        if (payload != null) {
+            //no handler mapping ran => name the route for http.server.requests ourselves
+            ServerHttpObservationFilter.findObservationContext(request)
+                    .ifPresent(context -> context.setPathPattern(request.getRequestURI()));
+            response.setStatus(HttpServletResponse.SC_OK);
+            response.setContentType(payload.contentType());
+            for (Map.Entry<String, String> header : payload.headers()) {
+                response.addHeader(header.getKey(), header.getValue());
+            }
+            write(payload, request, response);
+            return;
+        }
+
+        ContentCachingResponseWrapper wrapper = new ContentCachingResponseWrapper(response);
+        //shortly after a write the page is built from the primary => a lagging replica's page is never cached
+        if (catalogVersion.replicaMayLag()) {
+            try (DataSourceRoute.Pin pin = DataSourceRoute.primary()) {
+                chain.doFilter(request, wrapper);
+            }
+        } else {
+            chain.doFilter(request, wrapper);
+        }
+        //errors, 304s => passed through as they are
+        if (wrapper.getStatus() != HttpServletResponse.SC_OK || wrapper.getContentType() == null) {
+            wrapper.copyBodyToResponse();
+            return;
+        }
+        payload = capture(wrapper);
+        payloads.put(key, payload);
+        //the controller's headers are already on the response, only the body is still held by the wrapper
+        write(payload, request, response);
+    }
+
+    private static Payload capture(ContentCachingResponseWrapper response) throws IOException {
+        List<Map.Entry<String, String>> headers = new ArrayList<>();
+        for (String name : response.getHeaderNames()) {
+            if (!OWN_HEADERS.contains(name)) {
+                for (String value : response.getHeaders(name)) {
+                    headers.add(Map.entry(name, value));
+                }
+            }
+        }
+        byte[] identity = response.getContentAsByteArray();
+        return new Payload(response.getContentType(), List.copyOf(headers), response.getHeader(HttpHeaders.ETAG),
+                identity, identity.length < MIN_GZIP_SIZE ? null : gzip(identity));
+    }
+
+    //compressed once per entry => the best level is affordable
+    private static byte[] gzip(byte[] identity) throws IOException {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(identity.length / 4);
+        try (GZIPOutputStream out = new GZIPOutputStream(compressed) {
+            {
+                def.setLevel(Deflater.BEST_COMPRESSION);
+            }
+        }) {
+            out.write(identity);
+        }
+        return compressed.toByteArray();
+    }
+
+    private static void write(Payload payload, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        boolean gzip = payload.gzip() != null && acceptsGzip(request.getHeader(HttpHeaders.ACCEPT_ENCODING));
+        response.addHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+
+        if (payload.etag() != null) {
+            //another content coding is another representation => its own strong validator
+            String etag = gzip ? gzipEtag(payload.etag()) : payload.etag();
+            response.setHeader(HttpHeaders.ETAG, etag);
+            String ifNoneMatch = request.getHeader(HttpHeaders.IF_NONE_MATCH);
+            if (matches(ifNoneMatch, payload.etag()) || matches(ifNoneMatch, gzipEtag(payload.etag()))) {
+                response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+                return;
+            }
+        }
+
+        byte[] body = gzip ? payload.gzip() : payload.identity();
+        if (gzip) {
+            response.setHeader(HttpHeaders.CONTENT_ENCODING, GZIP);
+        }
+        response.setContentLength(body.length);
+        response.getOutputStream().write(body);
+    }
+
+    //"gzip", "gzip;q=0.8", "*" => yes, "gzip;q=0" or absent => no
+    static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        boolean wildcard = false;
+        for (String coding : acceptEncoding.split(",")) {
+            String[] parts = coding.split(";");
+            String name = parts[0].trim();
+            if (name.equalsIgnoreCase(GZIP) || name.equalsIgnoreCase("x-gzip")) {
+                return quality(parts) > 0;
+            }
+            if (name.equals("*")) {
+                wildcard = quality(parts) > 0;
+            }
+        }
+        return wildcard;
+    }
+
+    private static double quality(String[] parts) {
+        for (int i = 1; i < parts.length; i++) {
+            String parameter = parts[i].trim();
+            if (parameter.startsWith("q=")) {
+                try {
+                    return Double.parseDouble(parameter.substring(2));
+                } catch (NumberFormatException e) {
+                    return 0;
+                }
+            }
+        }
+        return 1;
+    }
+
+    private static String gzipEtag(String etag) {
+        return etag.endsWith("\"") ? etag.substring(0, etag.length() - 1) + "-gzip\"" : etag + "-gzip";
+    }
+
+    //weak comparison, as for any GET
+    private static boolean matches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        String tag = stripWeak(etag);
+        for (String candidate : ifNoneMatch.split(",")) {
+            candidate = candidate.trim();
+            if (candidate.equals("*") || Objects.equals(stripWeak(candidate), tag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String stripWeak(String etag) {
+        return etag.startsWith("W/") ? etag.substring(2) : etag;
+    }
+
+    private static Set<String> caseInsensitive(String... names) {
+        Set<String> set = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
+        set.addAll(List.of(names));
+        return set;
+    }
+}
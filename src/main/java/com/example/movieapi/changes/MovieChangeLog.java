@@ -0,0 +1,304 @@
+package com.example.movieapi.changes;
+
+import com.example.movieapi.datasource.DataSourceRoute;
+import com.example.movieapi.dto.MovieChangePage;
+import com.example.movieapi.model.MovieChange;
+import com.example.movieapi.repository.DatabaseConcurrencyLimiter;
+import com.example.movieapi.repository.MovieChangeRepository;
+import jakarta.persistence.EntityManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.NavigableSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.function.Consumer;
+
+//movie_changes => every write path records its changes in its own transaction, the feed is read by seq
+//seqs come from the movie_changes_seq sequence, taken just before the commit => a second jvm on the database
+//(e.g. the old and new one overlapping in a rolling deploy) records changes too, they never clash.
+//only the feed is shared: the movie cache, search index, counts and catalog version are per jvm and never see the
+//other one's writes => one instance per database stays the supported setup
+//a seq only becomes visible once every smaller one is settled: the "watermark".
+//a client that saw seq N never misses a smaller seq committed later
+//settled => committed, rolled back in this jvm, or a gap followed by a row older than visibility-delay
+//(another instance's transaction, committed by then or never). the table is polled every poll-interval for the rows
+//of other instances, this jvm's own commits move the watermark right away
+//changes are pushed to the listener (MovieChangeStream) in seq order as the watermark moves
+@Component
+@Lazy(false) //polled and pruned from boot on, even with spring.main.lazy-initialization and no write yet
+public class MovieChangeLog {
+
+    private static final Logger logger = LoggerFactory.getLogger(MovieChangeLog.class);
+
+    //rows read per poll query
+    private static final int POLL_PAGE = 1000;
+
+    private final MovieChangeRepository movieChangeRepository;
+    private final EntityManager entityManager;
+    private final DatabaseConcurrencyLimiter databaseConcurrencyLimiter;
+    private final Duration retention;
+    private final Duration visibilityDelay;
+
+    //guarded by this => taking seqs and marking them open is one step for the watermark
+    private long watermark;
+    private boolean initialized;
+    //taken by transactions of this jvm that did not finish yet => the watermark never moves past them
+    private final NavigableSet<Long> open = new TreeSet<>();
+    //rolled back in this jvm => skipped without waiting for visibility-delay
+    private final NavigableSet<Long> abandoned = new TreeSet<>();
+    //committed in this jvm, waiting for smaller seqs to settle before they are pushed
+    private final NavigableMap<Long, MovieChange> committed = new TreeMap<>();
+    //seqs up to here were pruned => a since below it cannot be served any more
+    private volatile long pruned;
+    private volatile Consumer<MovieChange> listener = change -> {};
+
+    public MovieChangeLog(MovieChangeRepository movieChangeRepository, EntityManager entityManager,
+                          DatabaseConcurrencyLimiter databaseConcurrencyLimiter,
+                          @Value("${movieapi.changes.retention}") Duration retention,
+                          @Value("${movieapi.changes.visibility-delay}") Duration visibilityDelay) {
+        this.movieChangeRepository = movieChangeRepository;
+        this.entityManager = entityManager;
+        this.databaseConcurrencyLimiter = databaseConcurrencyLimiter;
+        this.retention = retention;
+        this.visibilityDelay = visibilityDelay;
+    }
+
+    public void setListener(Consumer<MovieChange> listener) {
+        this.listener = listener;
+    }
+
+    //inside the transaction of the change => the rows commit or roll back together with the movies
+    public void record(List<MovieChange> changes) {
+        if (changes.isEmpty()) {
+            return;
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            throw new IllegalStateException("Movie changes must be recorded inside the transaction of the change");
+        }
+        initialize();
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            private List<Long> seqs = List.of();
+
+            //as late as possible => the time between taking a seq and the commit stays far below visibility-delay
+            @Override
+            public void beforeCommit(boolean readOnly) {
+                seqs = take(changes);
+                //new rows with assigned ids => persist, flushed as jdbc batches by the commit
+                for (MovieChange change : changes) {
+                    entityManager.persist(change);
+                }
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                finish(seqs, changes, status == STATUS_COMMITTED);
+            }
+        });
+    }
+
+    public void record(MovieChange change) {
+        record(List.of(change));
+    }
+
+    //one round trip for the whole batch, under the lock => a poll never sees these seqs as gaps of another instance
+    private synchronized List<Long> take(List<MovieChange> changes) {
+        List<Long> seqs = new ArrayList<>(movieChangeRepository.nextSeqs(changes.size()));
+        Collections.sort(seqs);
+        Instant now = Instant.now();
+        for (int i = 0; i < seqs.size(); i++) {
+            changes.get(i).setSeq(seqs.get(i), now);
+            open.add(seqs.get(i));
+        }
+        return seqs;
+    }
+
+    //no db access => runs in the writer's thread after the commit
+    //a seq at or below the watermark was already released by a poll that found its row
+    private synchronized void finish(List<Long> seqs, List<MovieChange> changes, boolean commit) {
+        for (int i = 0; i < seqs.size(); i++) {
+            open.remove(seqs.get(i));
+            if (seqs.get(i) <= watermark) {
+                continue;
+            }
+            if (commit) {
+                committed.put(seqs.get(i), changes.get(i));
+            } else {
+                abandoned.add(seqs.get(i));
+            }
+        }
+        release(List.of());
+    }
+
+    //background => off the request permits, see DatabaseConcurrencyLimiter.outsideLimit
+    @Scheduled(initialDelayString = "${movieapi.changes.poll-interval}", fixedDelayString = "${movieapi.changes.poll-interval}")
+    public void scheduledPoll() {
+        databaseConcurrencyLimiter.outsideLimit(this::poll);
+    }
+
+    //rows of other instances => read after the watermark, outside the lock (no connection is waited for while holding it)
+    public void poll() {
+        initialize();
+        List<MovieChange> rows;
+        do {
+            long from = watermark();
+            //from the primary => a replica could still miss commits the watermark would move past
+            try (DataSourceRoute.Pin pin = DataSourceRoute.primary()) {
+                rows = movieChangeRepository.findPage(from, Long.MAX_VALUE, PageRequest.of(0, POLL_PAGE));
+            }
+            synchronized (this) {
+                release(rows);
+            }
+            //a full page released as a whole => there may be more after it
+        } while (rows.size() == POLL_PAGE && watermark() >= rows.get(rows.size() - 1).getSeq());
+    }
+
+    //moves the watermark over every settled seq, rows = what the table holds after some earlier watermark
+    //pushed while holding the lock => the listener sees the seqs in order (it only enqueues)
+    private void release(List<MovieChange> rows) {
+        Instant settledBefore = Instant.now().minus(visibilityDelay);
+        int row = 0;
+        while (true) {
+            while (row < rows.size() && rows.get(row).getSeq() <= watermark) {
+                row++;
+            }
+            long next = watermark + 1;
+            MovieChange change = committed.remove(next);
+            if (change == null && row < rows.size() && rows.get(row).getSeq() == next) {
+                change = rows.get(row);
+            }
+            if (change != null) {
+                listener.accept(change);
+            } else if (open.contains(next)) {
+                break;
+            } else if (!abandoned.remove(next)) {
+                //a gap => another instance's seq, settled once a later row is older than visibility-delay
+                //(this jvm's own later commits count too, they are in the table)
+                MovieChange later = firstAfter(next, rows, row);
+                if (later == null || !later.getChangedAt().isBefore(settledBefore)) {
+                    break;
+                }
+            }
+            watermark = next;
+        }
+        //seqs rolled back below a watermark moved by the table alone
+        abandoned.headSet(watermark, true).clear();
+    }
+
+    private MovieChange firstAfter(long seq, List<MovieChange> rows, int row) {
+        Map.Entry<Long, MovieChange> local = committed.higherEntry(seq);
+        MovieChange fromTable = row < rows.size() ? rows.get(row) : null;
+        if (local == null) {
+            return fromTable;
+        }
+        return fromTable == null || local.getKey() < fromTable.getSeq() ? local.getValue() : fromTable;
+    }
+
+    //highest seq up to which everything is settled
+    public long watermark() {
+        initialize();
+        synchronized (this) {
+            return watermark;
+        }
+    }
+
+    //since == null => no changes, only the cursor to start from (taken before reading the catalog itself)
+    public MovieChangePage changesSince(Long since, int limit) {
+        long upTo = watermark();
+        if (since == null) {
+            return new MovieChangePage(List.of(), upTo, false);
+        }
+        checkCursor(since);
+        upTo = watermark();
+        //the watermark counts commits on the primary => a replica could still miss some of them, the client
+        //would move its cursor past changes it never saw
+        List<MovieChange> changes;
+        try (DataSourceRoute.Pin pin = DataSourceRoute.primary()) {
+            changes = movieChangeRepository.findPage(since, upTo, PageRequest.of(0, limit + 1));
+        }
+        boolean hasMore = changes.size() > limit;
+        if (hasMore) {
+            changes = changes.subList(0, limit);
+            return new MovieChangePage(changes, changes.get(changes.size() - 1).getSeq(), true);
+        }
+        //seqs between the last change and upTo were rolled back => nothing left to see below upTo
+        return new MovieChangePage(changes, Math.max(since, upTo), false);
+    }
+
+    //410 => the client has to reload the catalog and start over from a fresh cursor
+    public void checkCursor(long since) {
+        if (since < pruned) {
+            throw new ResponseStatusException(HttpStatus.GONE,
+                    "Changes up to " + pruned + " were pruned, reload the catalog and continue from " + watermark());
+        }
+        if (since <= watermark()) {
+            return;
+        }
+        //handed out by an instance further ahead => catch up with the table first
+        poll();
+        if (since <= watermark()) {
+            return;
+        }
+        Long max;
+        try (DataSourceRoute.Pin pin = DataSourceRoute.primary()) {
+            max = movieChangeRepository.findMaxSeq();
+        }
+        if (max == null || since > max) {
+            //a cursor of another database (e.g. before a restart of the in-memory one)
+            throw new ResponseStatusException(HttpStatus.GONE,
+                    "Unknown change " + since + ", reload the catalog and continue from " + watermark());
+        }
+    }
+
+    @Scheduled(initialDelayString = "${movieapi.changes.prune-interval}", fixedDelayString = "${movieapi.changes.prune-interval}")
+    public void scheduledPrune() {
+        databaseConcurrencyLimiter.outsideLimit(this::prune);
+    }
+
+    //changes older than the retention are deleted, from the oldest on so what is left has no holes
+    //every instance prunes => each one knows how far, deleting what another one deleted already is a no-op
+    public void prune() {
+        Long upTo = movieChangeRepository.findMaxSeqBefore(Instant.now().minus(retention));
+        if (upTo == null || upTo <= pruned) {
+            return;
+        }
+        //moved first => a reader in between gets a 410, never a page with holes
+        pruned = upTo;
+        int deleted = movieChangeRepository.deleteUpTo(upTo);
+        logger.info("Pruned {} movie changes up to seq {}", deleted, upTo);
+    }
+
+    //first use, once schema.sql ran => starts after the newest settled row of a file database,
+    //what came after it is released by the first poll
+    private synchronized void initialize() {
+        if (initialized) {
+            return;
+        }
+        Long settled;
+        Long min;
+        try (DataSourceRoute.Pin pin = DataSourceRoute.primary()) {
+            settled = movieChangeRepository.findMaxSeqBefore(Instant.now().minus(visibilityDelay));
+            min = movieChangeRepository.findMinSeq();
+        }
+        long start = min == null ? 0 : min - 1;
+        watermark = settled == null ? start : Math.max(settled, start);
+        pruned = start;
+        initialized = true;
+    }
+}
@@ -0,0 +1,192 @@
+package com.example.movieapi.changes;
+
+import com.example.movieapi.dto.MovieChangePage;
+import com.example.movieapi.model.MovieChange;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+//GET /movies/changes/stream => server-sent events, one per change ("id" = seq, "event" = INSERT|UPDATE|DELETE)
+//each subscriber gets a bounded buffer and its own sender (virtual thread): publishing never waits for a client,
+//a client that lets its buffer fill up is evicted and resumes from its Last-Event-ID (replayed from movie_changes)
+//evicted => dropped from the subscribers right away, its sender tells it so once the send in progress returns:
+//a client that stopped reading blocks that send until tomcat's write timeout (server.tomcat.connection-timeout)
+//fails it, the emitter can't be completed from here meanwhile (it is locked by the blocked send)
+@Component
+public class MovieChangeStream {
+
+    //changes read per query while replaying from the table
+    private static final int REPLAY_PAGE = 500;
+    //comment line sent on quiet streams => proxies keep the connection, dead clients are noticed
+    private static final long HEARTBEAT_SECONDS = 15;
+    private static final ThreadFactory SENDERS = Thread.ofVirtual().name("movie-changes-", 0).factory();
+
+    private final MovieChangeLog movieChangeLog;
+    private final int bufferSize;
+    private final int maxSubscribers;
+    private final Duration timeout;
+    //compact json whatever the mvc setup (the pretty printer of ?pretty does not apply here), written once per change
+    private final ObjectWriter writer;
+    private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+    private final Counter published;
+    private final Counter evicted;
+
+    //what every subscriber is sent for one change
+    private record Event(long seq, String name, String data) {}
+
+    private final class Subscriber {
+        private final SseEmitter emitter;
+        private final BlockingQueue<Event> buffer = new ArrayBlockingQueue<>(bufferSize);
+        private volatile boolean evicted;
+        private volatile boolean closed;
+
+        private Subscriber(SseEmitter emitter) {
+            this.emitter = emitter;
+        }
+
+        //replay from the table up to now, then the live events => seqs already replayed are skipped
+        private void run(long since) {
+            long cursor = since;
+            try {
+                MovieChangePage page;
+                do {
+                    page = movieChangeLog.changesSince(cursor, REPLAY_PAGE);
+                    for (MovieChange change : page.changes()) {
+                        send(toEvent(change));
+                    }
+                    cursor = page.next();
+                } while (page.hasMore() && !closed);
+
+                while (!closed) {
+                    if (evicted) {
+                        emitter.send(SseEmitter.event().name("evicted")
+                                .data("Too far behind, reconnect with Last-Event-ID " + cursor, MediaType.TEXT_PLAIN));
+                        emitter.complete();
+                        return;
+                    }
+                    Event event = buffer.poll(HEARTBEAT_SECONDS, TimeUnit.SECONDS);
+                    if (event == null) {
+                        emitter.send(SseEmitter.event().comment("heartbeat"));
+                    } else if (event.seq() > cursor) {
+                        send(event);
+                        cursor = event.seq();
+                    }
+                }
+            } catch (IOException | IllegalStateException | ResponseStatusException e) {
+                //client gone (or the emitter already completed) => nothing left to send to
+                emitter.completeWithError(e);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                emitter.complete();
+            } finally {
+                close();
+            }
+        }
+
+        private void send(Event event) throws IOException {
+            emitter.send(SseEmitter.event()
+                    .id(Long.toString(event.seq()))
+                    .name(event.name())
+                    .data(event.data(), MediaType.APPLICATION_JSON));
+        }
+
+        private void close() {
+            closed = true;
+            subscribers.remove(this);
+        }
+    }
+
+    public MovieChangeStream(MovieChangeLog movieChangeLog, ObjectMapper objectMapper, MeterRegistry registry,
+                             @Value("${movieapi.changes.subscriber-buffer}") int bufferSize,
+                             @Value("${movieapi.changes.max-subscribers}") int maxSubscribers,
+                             @Value("${movieapi.changes.stream-timeout}") Duration timeout) {
+        this.movieChangeLog = movieChangeLog;
+        this.bufferSize = bufferSize;
+        this.maxSubscribers = maxSubscribers;
+        this.timeout = timeout;
+        this.writer = objectMapper.writer().without(SerializationFeature.INDENT_OUTPUT);
+
+        Gauge.builder("movies.changes.subscribers", subscribers, Set::size).register(registry);
+        this.published = registry.counter("movies.changes.published");
+        this.evicted = registry.counter("movies.changes.evicted");
+    }
+
+    //the one instance receiving what MovieChangeLog releases
+    @PostConstruct
+    public void listen() {
+        movieChangeLog.setListener(this::publish);
+    }
+
+    //since => last seq the client has (Last-Event-ID on a reconnect), null => only what happens from now on
+    public SseEmitter subscribe(Long since) {
+        SseEmitter emitter = new SseEmitter(timeout.toMillis());
+        subscribe(emitter, since);
+        return emitter;
+    }
+
+    public void subscribe(SseEmitter emitter, Long since) {
+        long from = since == null ? movieChangeLog.watermark() : since;
+        //410 before the stream starts, not as an error event
+        movieChangeLog.checkCursor(from);
+        if (subscribers.size() >= maxSubscribers) {
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Too many change stream subscribers");
+        }
+        Subscriber subscriber = new Subscriber(emitter);
+        //registered before the replay reads the table => no change falls between replay and live events
+        subscribers.add(subscriber);
+        emitter.onCompletion(subscriber::close);
+        emitter.onTimeout(subscriber::close);
+        emitter.onError(e -> subscriber.close());
+        SENDERS.newThread(() -> subscriber.run(from)).start();
+    }
+
+    //called by MovieChangeLog in seq order, never blocks => a full buffer evicts its subscriber instead
+    public void publish(MovieChange change) {
+        published.increment();
+        if (subscribers.isEmpty()) {
+            return;
+        }
+        Event event = toEvent(change);
+        for (Subscriber subscriber : subscribers) {
+            if (!subscriber.buffer.offer(event) && !subscriber.evicted) {
+                subscriber.evicted = true;
+                //no more events, no longer counted against max-subscribers, even while its sender is stuck
+                subscribers.remove(subscriber);
+                evicted.increment();
+            }
+        }
+    }
+
+    public int subscribers() {
+        return subscribers.size();
+    }
+
+    private Event toEvent(MovieChange change) {
+        try {
+            return new Event(change.getSeq(), change.getType().name(), writer.writeValueAsString(change));
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package com.example.movieapi.codec;
+
+import com.fasterxml.jackson.core.PrettyPrinter;
+import com.fasterxml.jackson.core.util.DefaultPrettyPrinter;
+import com.fasterxml.jackson.core.util.Instantiatable;
+import com.fasterxml.jackson.core.util.MinimalPrettyPrinter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.springframework.boot.autoconfigure.jackson.Jackson2ObjectMapperBuilderCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.util.List;
+
+//response formats besides json, picked from the Accept header:
+//application/cbor, application/x-jackson-smile (same ObjectMapper settings as json, binary encoding)
+//and application/x-protobuf (src/main/proto/movie.proto, movie endpoints only)
+@Configuration
+public class MediaFormatsConfig implements WebMvcConfigurer {
+
+    //query parameter that turns indentation on for one request => "?pretty" or "?pretty=true"
+    static final String PRETTY_PARAM = "pretty";
+
+    //a converter bean replaces boot's default one of the same class in place => json stays first for Accept: */*
+    @Bean
+    public MappingJackson2CborHttpMessageConverter cborHttpMessageConverter(Jackson2ObjectMapperBuilder builder) {
+        return new MappingJackson2CborHttpMessageConverter(builder.factory(new CBORFactory())
+                .featuresToDisable(SerializationFeature.INDENT_OUTPUT).build());
+    }
+
+    @Bean
+    public MappingJackson2SmileHttpMessageConverter smileHttpMessageConverter(Jackson2ObjectMapperBuilder builder) {
+        return new MappingJackson2SmileHttpMessageConverter(builder.factory(new SmileFactory())
+                .featuresToDisable(SerializationFeature.INDENT_OUTPUT).build());
+    }
+
+    //added last (not a bean) => only chosen when the client asks for protobuf explicitly
+    @Override
+    public void extendMessageConverters(List<HttpMessageConverter<?>> converters) {
+        converters.add(new MovieProtobufHttpMessageConverter());
+    }
+
+    //json is written compact, indentation only for the requests that ask for it
+    //(the hal converter of spring hateoas copies this ObjectMapper => same behaviour on /movies)
+    @Bean
+    public Jackson2ObjectMapperBuilderCustomizer prettyPrintOnRequest() {
+        return builder -> builder
+                .featuresToEnable(SerializationFeature.INDENT_OUTPUT)
+                .postConfigurer(mapper -> mapper.setDefaultPrettyPrinter(new PrettyOnRequest()));
+    }
+
+    //jackson asks for a new pretty printer per generator when INDENT_OUTPUT is on =>
+    //DefaultPrettyPrinter when the current request has ?pretty, otherwise none (null = plain compact generator)
+    static final class PrettyOnRequest extends MinimalPrettyPrinter implements Instantiatable<PrettyPrinter> {
+
+        @Override
+        public PrettyPrinter createInstance() {
+            return prettyRequested() ? new DefaultPrettyPrinter() : null;
+        }
+
+        private static boolean prettyRequested() {
+            if (RequestContextHolder.getRequestAttributes() instanceof ServletRequestAttributes attributes) {
+                String pretty = attributes.getRequest().getParameter(PRETTY_PARAM);
+                return pretty != null && !"false".equalsIgnoreCase(pretty);
+            }
+            return false;
+        }
+    }
+}
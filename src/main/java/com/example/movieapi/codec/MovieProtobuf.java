@@ -0,0 +1,181 @@
+package com.example.movieapi.codec;
+
+import com.example.movieapi.dto.MovieDTO;
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.WireFormat;
+import org.springframework.hateoas.CollectionModel;
+import org.springframework.hateoas.Link;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+//hand-written encoder/decoder of src/main/proto/movie.proto => no protoc step in the build and no generated
+//message objects in between, MovieDTOs go straight to the stream (like /movies/export does with json)
+public final class MovieProtobuf {
+
+    //tag = field number << 3 | wire type, see movie.proto for the field numbers
+    private static final int MOVIE_ID = 1 << 3 | WireFormat.WIRETYPE_VARINT;
+    private static final int MOVIE_TITLE = 2 << 3 | WireFormat.WIRETYPE_LENGTH_DELIMITED;
+    private static final int MOVIE_DIRECTOR = 3 << 3 | WireFormat.WIRETYPE_LENGTH_DELIMITED;
+    private static final int MOVIE_YEAR = 4 << 3 | WireFormat.WIRETYPE_VARINT;
+    private static final int MOVIE_LINKS = 5 << 3 | WireFormat.WIRETYPE_LENGTH_DELIMITED;
+    private static final int LIST_MOVIES = 1 << 3 | WireFormat.WIRETYPE_LENGTH_DELIMITED;
+    private static final int LIST_LINKS = 2 << 3 | WireFormat.WIRETYPE_LENGTH_DELIMITED;
+    private static final int LINK_REL = 1 << 3 | WireFormat.WIRETYPE_LENGTH_DELIMITED;
+    private static final int LINK_HREF = 2 << 3 | WireFormat.WIRETYPE_LENGTH_DELIMITED;
+
+    private static final int BUFFER_SIZE = 8192;
+
+    private MovieProtobuf() {
+    }
+
+    //message Movie
+    public static void writeMovie(MovieDTO movie, OutputStream outputStream) throws IOException {
+        CodedOutputStream out = CodedOutputStream.newInstance(outputStream, BUFFER_SIZE);
+        writeMovieFields(out, movie);
+        out.flush();
+    }
+
+    //message MovieList
+    public static void writeMovieList(Iterable<MovieDTO> movies, Iterable<Link> links, OutputStream outputStream)
+            throws IOException {
+        CodedOutputStream out = CodedOutputStream.newInstance(outputStream, BUFFER_SIZE);
+        for (MovieDTO movie : movies) {
+            //embedded message => its length goes first
+            out.writeUInt32NoTag(LIST_MOVIES);
+            out.writeUInt32NoTag(movieSize(movie));
+            writeMovieFields(out, movie);
+        }
+        for (Link link : links) {
+            out.writeUInt32NoTag(LIST_LINKS);
+            out.writeUInt32NoTag(linkSize(link));
+            writeLinkFields(out, link);
+        }
+        out.flush();
+    }
+
+    public static MovieDTO readMovie(InputStream inputStream) throws IOException {
+        return readMovie(CodedInputStream.newInstance(inputStream));
+    }
+
+    public static CollectionModel<MovieDTO> readMovieList(InputStream inputStream) throws IOException {
+        CodedInputStream in = CodedInputStream.newInstance(inputStream);
+        List<MovieDTO> movies = new ArrayList<>();
+        List<Link> links = new ArrayList<>();
+        int tag;
+        while ((tag = in.readTag()) != 0) {
+            switch (tag) {
+                case LIST_MOVIES -> {
+                    int limit = in.pushLimit(in.readRawVarint32());
+                    movies.add(readMovie(in));
+                    in.popLimit(limit);
+                }
+                case LIST_LINKS -> {
+                    int limit = in.pushLimit(in.readRawVarint32());
+                    links.add(readLink(in));
+                    in.popLimit(limit);
+                }
+                default -> in.skipField(tag);
+            }
+        }
+        return CollectionModel.of(movies, links);
+    }
+
+    private static void writeMovieFields(CodedOutputStream out, MovieDTO movie) throws IOException {
+        if (movie.getId() != null && movie.getId() != 0) {
+            out.writeUInt32NoTag(MOVIE_ID);
+            out.writeInt64NoTag(movie.getId());
+        }
+        writeString(out, MOVIE_TITLE, movie.getTitle());
+        writeString(out, MOVIE_DIRECTOR, movie.getDirector());
+        if (movie.getYear() != 0) {
+            out.writeUInt32NoTag(MOVIE_YEAR);
+            out.writeInt32NoTag(movie.getYear());
+        }
+        for (Link link : movie.getLinks()) {
+            out.writeUInt32NoTag(MOVIE_LINKS);
+            out.writeUInt32NoTag(linkSize(link));
+            writeLinkFields(out, link);
+        }
+    }
+
+    private static void writeLinkFields(CodedOutputStream out, Link link) throws IOException {
+        writeString(out, LINK_REL, link.getRel().value());
+        writeString(out, LINK_HREF, link.getHref());
+    }
+
+    private static void writeString(CodedOutputStream out, int tag, String value) throws IOException {
+        if (value != null && !value.isEmpty()) {
+            out.writeUInt32NoTag(tag);
+            out.writeStringNoTag(value);
+        }
+    }
+
+    //encoded size of the fields written by writeMovieFields, needed up front for the length prefix
+    private static int movieSize(MovieDTO movie) {
+        int size = 0;
+        if (movie.getId() != null && movie.getId() != 0) {
+            size += CodedOutputStream.computeUInt32SizeNoTag(MOVIE_ID)
+                    + CodedOutputStream.computeInt64SizeNoTag(movie.getId());
+        }
+        size += stringSize(MOVIE_TITLE, movie.getTitle());
+        size += stringSize(MOVIE_DIRECTOR, movie.getDirector());
+        if (movie.getYear() != 0) {
+            size += CodedOutputStream.computeUInt32SizeNoTag(MOVIE_YEAR)
+                    + CodedOutputStream.computeInt32SizeNoTag(movie.getYear());
+        }
+        for (Link link : movie.getLinks()) {
+            int linkSize = linkSize(link);
+            size += CodedOutputStream.computeUInt32SizeNoTag(MOVIE_LINKS)
+                    + CodedOutputStream.computeUInt32SizeNoTag(linkSize) + linkSize;
+        }
+        return size;
+    }
+
+    private static int linkSize(Link link) {
+        return stringSize(LINK_REL, link.getRel().value()) + stringSize(LINK_HREF, link.getHref());
+    }
+
+    private static int stringSize(int tag, String value) {
+        return value == null || value.isEmpty() ? 0
+                : CodedOutputStream.computeUInt32SizeNoTag(tag) + CodedOutputStream.computeStringSizeNoTag(value);
+    }
+
+    private static MovieDTO readMovie(CodedInputStream in) throws IOException {
+        MovieDTO movie = new MovieDTO();
+        int tag;
+        while ((tag = in.readTag()) != 0) {
+            switch (tag) {
+                case MOVIE_ID -> movie.setId(in.readInt64());
+                case MOVIE_TITLE -> movie.setTitle(in.readStringRequireUtf8());
+                case MOVIE_DIRECTOR -> movie.setDirector(in.readStringRequireUtf8());
+                case MOVIE_YEAR -> movie.setYear(in.readInt32());
+                case MOVIE_LINKS -> {
+                    int limit = in.pushLimit(in.readRawVarint32());
+                    movie.add(readLink(in));
+                    in.popLimit(limit);
+                }
+                default -> in.skipField(tag);
+            }
+        }
+        return movie;
+    }
+
+    private static Link readLink(CodedInputStream in) throws IOException {
+        String rel = "";
+        String href = "";
+        int tag;
+        while ((tag = in.readTag()) != 0) {
+            switch (tag) {
+                case LINK_REL -> rel = in.readStringRequireUtf8();
+                case LINK_HREF -> href = in.readStringRequireUtf8();
+                default -> in.skipField(tag);
+            }
+        }
+        return Link.of(href, rel);
+    }
+}
@@ -0,0 +1,97 @@
+package com.example.movieapi.codec;
+
+import com.example.movieapi.dto.MovieDTO;
+import com.google.protobuf.InvalidProtocolBufferException;
+import org.springframework.core.ResolvableType;
+import org.springframework.hateoas.CollectionModel;
+import org.springframework.hateoas.Links;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractGenericHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.lang.Nullable;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.util.Collection;
+import java.util.List;
+
+//Accept: application/x-protobuf on the movie endpoints => MovieDTO, List<MovieDTO> and CollectionModel<MovieDTO>
+//anything else (counts, errors, entities) is left to the other converters
+public class MovieProtobufHttpMessageConverter extends AbstractGenericHttpMessageConverter<Object> {
+
+    public static final MediaType APPLICATION_PROTOBUF = MediaType.parseMediaType("application/x-protobuf");
+
+    public MovieProtobufHttpMessageConverter() {
+        super(APPLICATION_PROTOBUF);
+    }
+
+    //non generic calls only know the raw class => a List could hold anything
+    @Override
+    protected boolean supports(Class<?> clazz) {
+        return MovieDTO.class.isAssignableFrom(clazz);
+    }
+
+    @Override
+    public boolean canRead(Type type, @Nullable Class<?> contextClass, @Nullable MediaType mediaType) {
+        return isMovies(type) && canRead(mediaType);
+    }
+
+    @Override
+    public boolean canWrite(@Nullable Type type, Class<?> clazz, @Nullable MediaType mediaType) {
+        return (type != null ? isMovies(type) : supports(clazz)) && canWrite(mediaType);
+    }
+
+    //mvc asks with the raw class once the generic canWrite said yes => the containers have to answer too
+    @Override
+    public List<MediaType> getSupportedMediaTypes(Class<?> clazz) {
+        return supports(clazz) || List.class.isAssignableFrom(clazz) || CollectionModel.class.isAssignableFrom(clazz)
+                ? getSupportedMediaTypes() : List.of();
+    }
+
+    private static boolean isMovies(Type type) {
+        ResolvableType resolved = ResolvableType.forType(type);
+        Class<?> clazz = resolved.toClass();
+        if (MovieDTO.class.isAssignableFrom(clazz)) {
+            return true;
+        }
+        if (List.class.isAssignableFrom(clazz)) {
+            return MovieDTO.class.isAssignableFrom(resolved.as(List.class).getGeneric(0).toClass());
+        }
+        if (CollectionModel.class.isAssignableFrom(clazz)) {
+            return MovieDTO.class.isAssignableFrom(resolved.as(CollectionModel.class).getGeneric(0).toClass());
+        }
+        return false;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    protected void writeInternal(Object body, @Nullable Type type, HttpOutputMessage outputMessage) throws IOException {
+        if (body instanceof MovieDTO movie) {
+            MovieProtobuf.writeMovie(movie, outputMessage.getBody());
+        } else if (body instanceof CollectionModel<?> model) {
+            MovieProtobuf.writeMovieList((Collection<MovieDTO>) model.getContent(), model.getLinks(), outputMessage.getBody());
+        } else {
+            MovieProtobuf.writeMovieList((List<MovieDTO>) body, Links.NONE, outputMessage.getBody());
+        }
+    }
+
+    @Override
+    public Object read(Type type, @Nullable Class<?> contextClass, HttpInputMessage inputMessage) throws IOException {
+        return read(ResolvableType.forType(type).toClass(), inputMessage);
+    }
+
+    @Override
+    protected Object readInternal(Class<?> clazz, HttpInputMessage inputMessage) throws IOException {
+        try {
+            if (MovieDTO.class.isAssignableFrom(clazz)) {
+                return MovieProtobuf.readMovie(inputMessage.getBody());
+            }
+            CollectionModel<MovieDTO> model = MovieProtobuf.readMovieList(inputMessage.getBody());
+            return List.class.isAssignableFrom(clazz) ? List.copyOf(model.getContent()) : model;
+        } catch (InvalidProtocolBufferException e) {
+            throw new HttpMessageNotReadableException("Invalid protobuf message: " + e.getMessage(), e, inputMessage);
+        }
+    }
+}
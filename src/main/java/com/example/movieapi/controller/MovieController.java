@@ -1,69 +1,314 @@
 package com.example.movieapi.controller;
 
+import com.example.movieapi.changes.MovieChangeLog;
+import com.example.movieapi.changes.MovieChangeStream;
+import com.example.movieapi.dto.BulkInsertResult;
+import com.example.movieapi.dto.IngestStatus;
+import com.example.movieapi.dto.MovieChangePage;
 import com.example.movieapi.dto.MovieDTO;
+import com.example.movieapi.dto.MovieFilter;
+import com.example.movieapi.dto.MoviePage;
+import com.example.movieapi.dto.MoviePatch;
+import com.example.movieapi.dto.MovieVersion;
 import com.example.movieapi.model.Movie;
+import com.example.movieapi.search.SearchResult;
+import com.example.movieapi.service.MovieBulkService;
+import com.example.movieapi.service.MovieCountService;
+import com.example.movieapi.service.MovieImportService;
+import com.example.movieapi.service.MovieIngestService;
+import com.example.movieapi.service.MovieSearchService;
 import com.example.movieapi.service.MovieService;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.annotation.Timed;
+import org.springframework.context.annotation.Profile;
 import org.springframework.hateoas.CollectionModel;
+import org.springframework.hateoas.IanaLinkRelations;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.SortedMap;
+import java.util.UUID;
 
 import static org.springframework.hateoas.server.mvc.WebMvcLinkBuilder.linkTo;
 import static org.springframework.hateoas.server.mvc.WebMvcLinkBuilder.methodOn;
 
 @RestController
+@Profile("!reactive") //ReactiveMovieController serves the same routes on WebFlux
+@Timed(value = "movies.controller", histogram = true) //one timer per handler method, tagged class/method/exception
 public class MovieController {
 
+    //page size of the listings when the client does not send "limit"
+    private static final String DEFAULT_PAGE_SIZE = "100";
+
+    //newline-delimited json => one movie object per line
+    public static final String APPLICATION_NDJSON_VALUE = "application/x-ndjson";
+
+    //RFC 7240 => the client is fine with 202 and polling instead of waiting for the commit
+    private static final String PREFER_ASYNC = "respond-async";
+
     private final MovieService movieService;
+    private final MovieImportService movieImportService;
+    private final MovieIngestService movieIngestService;
+    private final MovieBulkService movieBulkService;
+    private final MovieChangeLog movieChangeLog;
+    private final MovieChangeStream movieChangeStream;
+    private final MovieSearchService movieSearchService;
+    private final MovieCountService movieCountService;
+    private final MovieLinks movieLinks;
+    private final ObjectMapper objectMapper;
 
-    public MovieController(MovieService movieService) {
+    public MovieController(MovieService movieService, MovieImportService movieImportService,
+                           MovieIngestService movieIngestService, MovieBulkService movieBulkService,
+                           MovieChangeLog movieChangeLog, MovieChangeStream movieChangeStream, MovieSearchService movieSearchService, MovieCountService movieCountService,
+                           MovieLinks movieLinks, ObjectMapper objectMapper) {
         this.movieService = movieService;
+        this.movieImportService = movieImportService;
+        this.movieIngestService = movieIngestService;
+        this.movieBulkService = movieBulkService;
+        this.movieChangeLog = movieChangeLog;
+        this.movieChangeStream = movieChangeStream;
+        this.movieSearchService = movieSearchService;
+        this.movieCountService = movieCountService;
+        this.movieLinks = movieLinks;
+        this.objectMapper = objectMapper;
     }
 
+    //in-memory counter, no COUNT(*) per request
     @GetMapping("/count")
     public ResponseEntity<Map<String, Long>> getMoviesCount() {
-        long count = movieService.getMoviesCount();
+        long count = movieCountService.getMoviesCount();
         //explicit mapping for the json structure
         //singletonMap => map containing only one entry
         Map<String, Long> response = Collections.singletonMap("number of movies in the database", count);
         return ResponseEntity.ok(response);
     }
 
+    //number of movies per year / per director, from the same counters as /count
+    @GetMapping("/count/years")
+    public ResponseEntity<Map<Integer, Long>> getCountsPerYear() {
+        return ResponseEntity.ok(movieCountService.getCountsPerYear());
+    }
+
+    //one director per movie at worst => paged by name like /simple by id, "after" is the last director of the previous page
+    @GetMapping("/count/directors")
+    public ResponseEntity<Map<String, Long>> getCountsPerDirector(@RequestParam(defaultValue = DEFAULT_PAGE_SIZE) int limit,
+                                                                  @RequestParam(required = false) String after) {
+        if (limit < 1 || limit > MovieService.MAX_PAGE_SIZE) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "limit must be between 1 and " + MovieService.MAX_PAGE_SIZE);
+        }
+        //one more than asked => tells whether there is a next page
+        SortedMap<String, Long> counts = movieCountService.getCountsPerDirector(after, limit + 1);
+        HttpHeaders headers = new HttpHeaders();
+        if (counts.size() > limit) {
+            counts.remove(counts.lastKey());
+            headers.add(HttpHeaders.LINK, linkTo(methodOn(MovieController.class)
+                    .getCountsPerDirector(limit, counts.lastKey()))
+                    .withRel(IanaLinkRelations.NEXT).expand().toString());
+        }
+        return ResponseEntity.ok().headers(headers).body(counts);
+    }
+
+    //keyset pagination => "after"/"before" are movie ids taken from the previous page, never an offset
     @GetMapping("/simple")
-    public ResponseEntity<List<MovieDTO>> getAllMoviesSimple() {
-        List<MovieDTO> movieDTOs = movieService.getAllMoviesSimple();
-        return ResponseEntity.ok(movieDTOs);
+    public ResponseEntity<List<MovieDTO>> getAllMoviesSimple(@RequestParam(defaultValue = DEFAULT_PAGE_SIZE) int limit,
+                                                             @RequestParam(required = false) Long after,
+                                                             @RequestParam(required = false) Long before,
+                                                             @RequestParam(required = false) String director,
+                                                             @RequestParam(required = false) Integer year,
+                                                             @RequestParam(required = false) Integer fromYear,
+                                                             @RequestParam(required = false) Integer toYear) {
+        MovieFilter filter = new MovieFilter(director, year, fromYear, toYear);
+        MoviePage page = movieService.getAllMoviesSimple(filter, after, before, limit);
+
+        //plain json array => the paging links travel in the Link header instead of the body
+        HttpHeaders headers = new HttpHeaders();
+        //expand() drops the unused optional parameters from the link templates
+        if (page.hasNext()) {
+            headers.add(HttpHeaders.LINK, linkTo(methodOn(MovieController.class)
+                    .getAllMoviesSimple(limit, page.lastId(), null, director, year, fromYear, toYear))
+                    .withRel(IanaLinkRelations.NEXT).expand().toString());
+        }
+        if (page.hasPrevious()) {
+            headers.add(HttpHeaders.LINK, linkTo(methodOn(MovieController.class)
+                    .getAllMoviesSimple(limit, null, page.firstId(), director, year, fromYear, toYear))
+                    .withRel(IanaLinkRelations.PREV).expand().toString());
+        }
+        return ResponseEntity.ok().headers(headers).varyBy(HttpHeaders.ACCEPT).body(page.getMovies());
     }
 
 
     @GetMapping("/movies")
-    public ResponseEntity<CollectionModel<MovieDTO>> getAllMovies() {
-        List<MovieDTO> movieDTOs = movieService.getAllMovies();
+    public ResponseEntity<CollectionModel<MovieDTO>> getAllMovies(@RequestParam(defaultValue = DEFAULT_PAGE_SIZE) int limit,
+                                                                  @RequestParam(required = false) Long after,
+                                                                  @RequestParam(required = false) Long before,
+                                                                  @RequestParam(required = false) String director,
+                                                                  @RequestParam(required = false) Integer year,
+                                                                  @RequestParam(required = false) Integer fromYear,
+                                                                  @RequestParam(required = false) Integer toYear,
+                                                                  WebRequest request) {
+        MovieFilter filter = new MovieFilter(director, year, fromYear, toYear);
+        //rows without links => an unchanged page is a 304 before any link is built or any json written
+        MoviePage page = movieService.getAllMoviesSimple(filter, after, before, limit);
+        //ETag only: a delete inside the page would not move a Last-Modified
+        String etag = MovieETags.of(page);
+        if (request.checkNotModified(etag)) {
+            return null;
+        }
+        movieLinks.addSelfLinks(page.getMovies());
 
         // Create a CollectionModel to wrap the list of MovieDTOs and add links
-        CollectionModel<MovieDTO> collectionModel = CollectionModel.of(movieDTOs);
-        collectionModel.add(linkTo(methodOn(MovieController.class).getAllMovies()).withSelfRel());
+        CollectionModel<MovieDTO> collectionModel = CollectionModel.of(page.getMovies());
+        collectionModel.add(linkTo(methodOn(MovieController.class)
+                .getAllMovies(limit, after, before, director, year, fromYear, toYear, null)).withSelfRel().expand());
+        if (page.hasNext()) {
+            collectionModel.add(linkTo(methodOn(MovieController.class)
+                    .getAllMovies(limit, page.lastId(), null, director, year, fromYear, toYear, null)).withRel(IanaLinkRelations.NEXT).expand());
+        }
+        if (page.hasPrevious()) {
+            collectionModel.add(linkTo(methodOn(MovieController.class)
+                    .getAllMovies(limit, null, page.firstId(), director, year, fromYear, toYear, null)).withRel(IanaLinkRelations.PREV).expand());
+        }
+
+        //same ETag for json, cbor, smile and protobuf => caches must key on Accept as well
+        return ResponseEntity.ok().eTag(etag).varyBy(HttpHeaders.ACCEPT).body(collectionModel);
+    }
 
+    //autocomplete on title and director => ranked, every word of q must match (as a word or a word prefix)
+    @GetMapping("/movies/search")
+    public ResponseEntity<CollectionModel<MovieDTO>> searchMovies(@RequestParam String q,
+                                                                  @RequestParam(defaultValue = "20") int limit,
+                                                                  @RequestParam(defaultValue = "0") int offset) {
+        SearchResult result = movieSearchService.search(q, limit, offset);
+        movieLinks.addSelfLinks(result.getMovies());
+
+        CollectionModel<MovieDTO> collectionModel = CollectionModel.of(result.getMovies());
+        collectionModel.add(linkTo(methodOn(MovieController.class).searchMovies(q, limit, offset)).withSelfRel());
+        if (offset + limit < result.getTotal() && offset + 2 * limit <= MovieSearchService.MAX_SEARCH_WINDOW) {
+            collectionModel.add(linkTo(methodOn(MovieController.class).searchMovies(q, limit, offset + limit))
+                    .withRel(IanaLinkRelations.NEXT));
+        }
         return ResponseEntity.ok(collectionModel);
     }
 
+    //full catalog for the sync jobs => rows go from the db cursor straight to the socket,
+    //nothing is collected so memory stays flat whatever the size of the catalog
+    @GetMapping(value = "/movies/export", produces = APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> exportMovies() {
+        StreamingResponseBody body = outputStream -> {
+            //raw generator from the factory => no pretty printer, no tree model, no intermediate objects
+            try (JsonGenerator generator = objectMapper.getFactory().createGenerator(outputStream)) {
+                generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+                //jackson puts a space between root values by default => lines would start with it, the \n below is the only separator
+                generator.setRootValueSeparator(null);
+                movieService.streamAllMovies(movie -> {
+                    try {
+                        generator.writeStartObject();
+                        generator.writeNumberField("id", movie.getId());
+                        generator.writeStringField("title", movie.getTitle());
+                        generator.writeStringField("director", movie.getDirector());
+                        generator.writeNumberField("year", movie.getYear());
+                        generator.writeEndObject();
+                        generator.writeRaw('\n');
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            }
+        };
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(APPLICATION_NDJSON_VALUE))
+                .body(body);
+    }
+
+    //incremental sync => ask without since for a cursor, read the catalog (/simple), then keep asking with
+    //since = "next" of the previous answer: the cost follows the number of changes, not the size of the catalog
+    //410 => the cursor is older than the retention (or unknown), start over
+    @GetMapping("/movies/changes")
+    public ResponseEntity<MovieChangePage> getChanges(@RequestParam(required = false) Long since,
+                                                      @RequestParam(defaultValue = "1000") int limit) {
+        if (limit < 1 || limit > MovieService.MAX_PAGE_SIZE) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "limit must be between 1 and " + MovieService.MAX_PAGE_SIZE);
+        }
+        return ResponseEntity.ok(movieChangeLog.changesSince(since, limit));
+    }
+
+    //same feed pushed as server-sent events, from since (or Last-Event-ID when an EventSource reconnects) or from now
+    @GetMapping(value = "/movies/changes/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamChanges(@RequestParam(required = false) Long since,
+                                    @RequestHeader(value = "Last-Event-ID", required = false) Long lastEventId) {
+        return movieChangeStream.subscribe(lastEventId != null ? lastEventId : since);
+    }
+
+    //conditional GET => If-None-Match/If-Modified-Since are answered from the version alone (cache or a two-column
+    //query), the movie is only loaded and serialized when the client copy is stale
     @GetMapping("/movies/{id}")
-    public ResponseEntity<MovieDTO> getMovieById(@PathVariable Long id){
+    public ResponseEntity<MovieDTO> getMovieById(@PathVariable Long id, WebRequest request){
+        if (request.getHeader(HttpHeaders.IF_NONE_MATCH) != null || request.getHeader(HttpHeaders.IF_MODIFIED_SINCE) != null) {
+            MovieVersion version = movieService.getMovieVersion(id);
+            //checkNotModified already wrote the 304 and its headers
+            if (request.checkNotModified(MovieETags.of(version.version()), version.updatedAt().toEpochMilli())) {
+                return null;
+            }
+        }
         MovieDTO movie = movieService.getMovieById(id);
-        return ResponseEntity.ok(movie);
+        return ResponseEntity.ok()
+                .eTag(MovieETags.of(movie.getVersion()))
+                .lastModified(movie.getUpdatedAt())
+                .varyBy(HttpHeaders.ACCEPT)
+                .body(movie);
     }
 
+    //"Prefer: respond-async" => validated now, written later by the ingest queue in a batch with others,
+    //202 with the ticket to poll (Location), 429 when the queue is full
     @PostMapping("/add")
-    public ResponseEntity<Movie> addMovie(@RequestBody Movie movie) {
+    public ResponseEntity<?> addMovie(@RequestBody Movie movie,
+                                      @RequestHeader(value = "Prefer", required = false) String prefer) {
+        if (prefer != null && prefer.contains(PREFER_ASYNC)) {
+            if (!MovieService.isValid(movie)) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST);
+            }
+            IngestStatus status = movieIngestService.submit(movie);
+            return ResponseEntity.accepted()
+                    .header("Preference-Applied", PREFER_ASYNC)
+                    .location(linkTo(methodOn(MovieController.class).getIngestStatus(status.getTicket())).toUri())
+                    .body(status);
+        }
         Movie savedMovie = movieService.addMovie(movie).getBody();
-        return new ResponseEntity<>(savedMovie, HttpStatus.CREATED);
+        return ResponseEntity.status(HttpStatus.CREATED).eTag(MovieETags.of(savedMovie.getVersion())).body(savedMovie);
+    }
+
+    //QUEUED until the batch holding it is committed, kept for movieapi.ingest.status-retention after that
+    @GetMapping("/ingest/{ticket}")
+    public ResponseEntity<IngestStatus> getIngestStatus(@PathVariable UUID ticket) {
+        return movieIngestService.getStatus(ticket)
+                .map(ResponseEntity::ok)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Unknown or expired ingest ticket"));
+    }
+
+    //json array or ndjson => the body is read row by row, never bound as a whole list
+    @PostMapping(value = "/movies/bulk", consumes = {MediaType.APPLICATION_JSON_VALUE, APPLICATION_NDJSON_VALUE})
+    public ResponseEntity<List<BulkInsertResult>> addMovies(InputStream body) throws IOException {
+        try (MappingIterator<Movie> rows = objectMapper.readerFor(Movie.class).readValues(body)) {
+            return ResponseEntity.ok(movieImportService.importMovies(rows));
+        }
     }
 
     @DeleteMapping("/delete/{id}")
@@ -72,10 +317,35 @@ public class MovieController {
         return ResponseEntity.noContent().build();
     }
 
+    //set-based delete => ?id=1&id=2 (or id=1,2) and/or the listing filters, at least one of them
+    @DeleteMapping("/movies")
+    public ResponseEntity<Map<String, Integer>> deleteMovies(@RequestParam(name = "id", required = false) List<Long> ids,
+                                                             @RequestParam(required = false) String director,
+                                                             @RequestParam(required = false) Integer year,
+                                                             @RequestParam(required = false) Integer fromYear,
+                                                             @RequestParam(required = false) Integer toYear) {
+        int deleted = movieBulkService.deleteMovies(ids, new MovieFilter(director, year, fromYear, toYear));
+        return ResponseEntity.ok(Collections.singletonMap("deleted", deleted));
+    }
+
+    //set-based update => same selection as DELETE /movies, the body holds only the fields to change
+    @PatchMapping("/movies")
+    public ResponseEntity<Map<String, Integer>> updateMovies(@RequestParam(name = "id", required = false) List<Long> ids,
+                                                             @RequestParam(required = false) String director,
+                                                             @RequestParam(required = false) Integer year,
+                                                             @RequestParam(required = false) Integer fromYear,
+                                                             @RequestParam(required = false) Integer toYear,
+                                                             @RequestBody MoviePatch patch) {
+        int updated = movieBulkService.updateMovies(ids, new MovieFilter(director, year, fromYear, toYear), patch);
+        return ResponseEntity.ok(Collections.singletonMap("updated", updated));
+    }
+
+    //If-Match => only overwrite the version the client read (412 otherwise), without it the last writer still wins
     @PutMapping("/update/{id}")
-    public ResponseEntity<Movie> updateMovie(@PathVariable Long id, @RequestBody Movie movieDetails) {
-        Movie updatedMovie = movieService.updateMovie(id, movieDetails);
-        return ResponseEntity.ok(updatedMovie);
+    public ResponseEntity<Movie> updateMovie(@PathVariable Long id, @RequestBody Movie movieDetails,
+                                             @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        Movie updatedMovie = movieService.updateMovie(id, movieDetails, MovieETags.acceptedVersions(ifMatch));
+        return ResponseEntity.ok().eTag(MovieETags.of(updatedMovie.getVersion())).body(updatedMovie);
     }
 
 }
@@ -0,0 +1,56 @@
+package com.example.movieapi.controller;
+
+import com.example.movieapi.dto.MovieDTO;
+import com.example.movieapi.dto.MoviePage;
+import org.springframework.http.HttpStatus;
+import org.springframework.util.DigestUtils;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.nio.ByteBuffer;
+import java.util.HashSet;
+import java.util.Set;
+
+//strong ETags of the movie resources
+//a movie => its @Version, a page => digest of the (id, version) of its rows, so any add/update/delete inside it changes the tag
+final class MovieETags {
+
+    private MovieETags() {
+    }
+
+    static String of(long version) {
+        return "\"" + version + "\"";
+    }
+
+    static String of(MoviePage page) {
+        ByteBuffer buffer = ByteBuffer.allocate(page.getMovies().size() * 2 * Long.BYTES + 2);
+        for (MovieDTO movie : page.getMovies()) {
+            buffer.putLong(movie.getId()).putLong(movie.getVersion());
+        }
+        //the next/prev links are part of the representation as well
+        buffer.put((byte) (page.hasNext() ? 1 : 0)).put((byte) (page.hasPrevious() ? 1 : 0));
+        return "\"" + DigestUtils.md5DigestAsHex(buffer.array()) + "\"";
+    }
+
+    //If-Match header => versions the client accepts to overwrite, null when any version will do ("*" or no header)
+    //only strong tags can match (RFC 9110), a header without any => 412 straight away
+    static Set<Long> acceptedVersions(String ifMatch) {
+        if (ifMatch == null || ifMatch.trim().equals("*")) {
+            return null;
+        }
+        Set<Long> versions = new HashSet<>();
+        for (String tag : ifMatch.split(",")) {
+            tag = tag.trim();
+            if (tag.length() > 2 && tag.startsWith("\"") && tag.endsWith("\"")) {
+                try {
+                    versions.add(Long.parseLong(tag.substring(1, tag.length() - 1)));
+                } catch (NumberFormatException e) {
+                    //not one of ours => can never match
+                }
+            }
+        }
+        if (versions.isEmpty()) {
+            throw new ResponseStatusException(HttpStatus.PRECONDITION_FAILED, "If-Match does not match the current version");
+        }
+        return versions;
+    }
+}
@@ -0,0 +1,54 @@
+package com.example.movieapi.controller;
+
+import com.example.movieapi.dto.MovieDTO;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.hateoas.Link;
+import org.springframework.stereotype.Component;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.context.request.WebRequest;
+
+import java.util.List;
+import java.util.function.LongFunction;
+
+import static org.springframework.hateoas.server.mvc.WebMvcLinkBuilder.linkTo;
+
+//self links of GET /movies/{id} for whole pages of movies
+//linkTo(methodOn(...)) proxies the controller and re-reads the request for every row, here the path template
+//is split once at startup and the base uri once per page => per row only the href string is built
+@Component
+public class MovieLinks {
+
+    private final String pathPrefix;
+    private final String pathSuffix;
+
+    public MovieLinks() {
+        //taken from the mapping itself so a route change can't leave stale links behind
+        GetMapping mapping;
+        try {
+            mapping = AnnotatedElementUtils.findMergedAnnotation(
+                    MovieController.class.getMethod("getMovieById", Long.class, WebRequest.class), GetMapping.class);
+        } catch (NoSuchMethodException e) {
+            throw new IllegalStateException("MovieController.getMovieById(Long, WebRequest) not found", e);
+        }
+        String template = mapping.value()[0];
+        int start = template.indexOf('{');
+        int end = template.indexOf('}', start);
+        this.pathPrefix = template.substring(0, start);
+        this.pathSuffix = template.substring(end + 1);
+    }
+
+    //must be called on the request thread, the returned function can then be applied to any number of ids
+    //same href as linkTo(methodOn(MovieController.class).getMovieById(id, null)).withSelfRel()
+    public LongFunction<Link> selfLinks() {
+        String prefix = linkTo(MovieController.class).toUri() + pathPrefix;
+        return id -> Link.of(prefix + id + pathSuffix);
+    }
+
+    //a self link on every movie of a page (/movies, /movies/search), on the request thread as well
+    public void addSelfLinks(List<MovieDTO> movies) {
+        LongFunction<Link> selfLinks = selfLinks();
+        for (MovieDTO movie : movies) {
+            movie.add(selfLinks.apply(movie.getId()));
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package com.example.movieapi.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.hateoas.RepresentationModel;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerCodecConfigurer;
+import org.springframework.http.codec.json.Jackson2JsonEncoder;
+import org.springframework.web.reactive.config.WebFluxConfigurer;
+
+//spring hateoas restricts RepresentationModel types (MovieDTO) to its own json media types on every jackson encoder
+//=> without this the streaming endpoints of ReactiveMovieController cannot write application/x-ndjson
+@Configuration
+@Profile("reactive")
+public class ReactiveCodecConfig implements WebFluxConfigurer {
+
+    private final ObjectMapper objectMapper;
+
+    public ReactiveCodecConfig(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+    @Override
+    public void configureHttpMessageCodecs(ServerCodecConfigurer configurer) {
+        Jackson2JsonEncoder ndjson = new Jackson2JsonEncoder(objectMapper, MediaType.APPLICATION_NDJSON);
+        ndjson.registerObjectMappersForType(RepresentationModel.class,
+                mappers -> mappers.put(MediaType.APPLICATION_NDJSON, objectMapper));
+        configurer.customCodecs().registerWithDefaultConfig(ndjson);
+    }
+}
@@ -0,0 +1,119 @@
+package com.example.movieapi.controller;
+
+import com.example.movieapi.dto.MovieDTO;
+import com.example.movieapi.dto.MovieFilter;
+import com.example.movieapi.exceptions.MovieNotFoundException;
+import com.example.movieapi.model.Movie;
+import com.example.movieapi.repository.ReactiveMovieRepository;
+import com.example.movieapi.service.MovieService;
+import org.springframework.context.annotation.Profile;
+import org.springframework.hateoas.Link;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.util.UriComponentsBuilder;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Collections;
+import java.util.Map;
+
+//WebFlux twin of MovieController (profile "reactive") => same routes and payloads on R2DBC
+//list endpoints return a Flux: with Accept: application/x-ndjson every movie is written as soon as it is read
+//and the db is only asked for more rows when the client keeps up
+@RestController
+@Profile("reactive")
+public class ReactiveMovieController {
+
+    private final ReactiveMovieRepository reactiveMovieRepository;
+
+    public ReactiveMovieController(ReactiveMovieRepository reactiveMovieRepository) {
+        this.reactiveMovieRepository = reactiveMovieRepository;
+    }
+
+    @GetMapping("/count")
+    public Mono<Map<String, Long>> getMoviesCount() {
+        return reactiveMovieRepository.count()
+                .map(count -> Collections.singletonMap("number of movies in the database", count));
+    }
+
+    @GetMapping(value = "/simple", produces = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+    public Flux<MovieDTO> getAllMoviesSimple(@RequestParam(defaultValue = "100") int limit,
+                                             @RequestParam(required = false) Long after,
+                                             @RequestParam(required = false) String director,
+                                             @RequestParam(required = false) Integer year,
+                                             @RequestParam(required = false) Integer fromYear,
+                                             @RequestParam(required = false) Integer toYear) {
+        checkLimit(limit);
+        return reactiveMovieRepository.findPageAfter(after == null ? 0L : after,
+                new MovieFilter(director, year, fromYear, toYear), limit);
+    }
+
+    @GetMapping(value = "/movies", produces = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+    public Flux<MovieDTO> getAllMovies(@RequestParam(defaultValue = "100") int limit,
+                                       @RequestParam(required = false) Long after,
+                                       @RequestParam(required = false) String director,
+                                       @RequestParam(required = false) Integer year,
+                                       @RequestParam(required = false) Integer fromYear,
+                                       @RequestParam(required = false) Integer toYear,
+                                       ServerHttpRequest request) {
+        checkLimit(limit);
+        //same href as the servlet stack, the base is taken from the request once
+        String prefix = UriComponentsBuilder.fromUri(request.getURI()).replacePath("/movies/").replaceQuery(null)
+                .build().toUriString();
+        return reactiveMovieRepository.findPageAfter(after == null ? 0L : after,
+                        new MovieFilter(director, year, fromYear, toYear), limit)
+                .map(movie -> movie.add(Link.of(prefix + movie.getId())));
+    }
+
+    @GetMapping("/movies/{id}")
+    public Mono<MovieDTO> getMovieById(@PathVariable Long id) {
+        return reactiveMovieRepository.findById(id)
+                .switchIfEmpty(Mono.error(() -> new MovieNotFoundException(id)));
+    }
+
+    //duplicates hit the unique index => DataIntegrityViolationException => 409 from GlobalExceptionHandler
+    @PostMapping("/add")
+    public Mono<ResponseEntity<Movie>> addMovie(@RequestBody Movie movie) {
+        if (!MovieService.isValid(movie)) {
+            return Mono.error(new ResponseStatusException(HttpStatus.BAD_REQUEST));
+        }
+        return reactiveMovieRepository.insert(movie)
+                .map(id -> {
+                    movie.setId(id);
+                    return new ResponseEntity<>(movie, HttpStatus.CREATED);
+                });
+    }
+
+    @DeleteMapping("/delete/{id}")
+    public Mono<ResponseEntity<Void>> deleteMovie(@PathVariable Long id) {
+        return reactiveMovieRepository.deleteById(id)
+                .flatMap(deleted -> deleted == 0
+                        ? Mono.error(new MovieNotFoundException(id))
+                        : Mono.just(ResponseEntity.noContent().<Void>build()));
+    }
+
+    @PutMapping("/update/{id}")
+    public Mono<ResponseEntity<Movie>> updateMovie(@PathVariable Long id, @RequestBody Movie movieDetails) {
+        if (!MovieService.isValid(movieDetails)) {
+            return Mono.error(new ResponseStatusException(HttpStatus.BAD_REQUEST));
+        }
+        return reactiveMovieRepository.update(id, movieDetails)
+                .flatMap(updated -> {
+                    if (updated == 0) {
+                        return Mono.error(new ResponseStatusException(HttpStatus.NOT_FOUND, "Movie not found with id: " + id));
+                    }
+                    movieDetails.setId(id);
+                    return Mono.just(ResponseEntity.ok(movieDetails));
+                });
+    }
+
+    private static void checkLimit(int limit) {
+        if (limit < 1 || limit > MovieService.MAX_PAGE_SIZE) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "limit must be between 1 and " + MovieService.MAX_PAGE_SIZE);
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package com.example.movieapi.datasource;
+
+//read-only transactions go to the replica (ReadWriteRoutingDataSource) unless the current thread is pinned here
+//=> reads that must not be stale: a client right after its own write, whatever fills a shared cache or a cursor
+//without a replica configured the pin is only a thread local nobody looks at
+public final class DataSourceRoute {
+
+    private static final ThreadLocal<Boolean> PRIMARY = ThreadLocal.withInitial(() -> false);
+
+    //closing restores what was pinned before => pins nest
+    public interface Pin extends AutoCloseable {
+        @Override
+        void close();
+    }
+
+    private DataSourceRoute() {
+    }
+
+    //try (DataSourceRoute.Pin pin = DataSourceRoute.primary()) { ... }
+    public static Pin primary() {
+        boolean previous = PRIMARY.get();
+        PRIMARY.set(true);
+        return () -> PRIMARY.set(previous);
+    }
+
+    public static boolean isPinnedToPrimary() {
+        return PRIMARY.get();
+    }
+}
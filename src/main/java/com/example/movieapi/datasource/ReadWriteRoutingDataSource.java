@@ -0,0 +1,38 @@
+package com.example.movieapi.datasource;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.util.Map;
+
+//@Transactional(readOnly = true) (and the read-only repository methods) => replica, everything else => primary
+//the route is picked when a connection is taken: behind a LazyConnectionDataSourceProxy that is the first
+//statement, when the transaction and its read-only flag are already set up (not when the transaction begins)
+public class ReadWriteRoutingDataSource extends AbstractRoutingDataSource {
+
+    public enum Route { PRIMARY, REPLICA }
+
+    private final Counter primaryConnections;
+    private final Counter replicaConnections;
+
+    public ReadWriteRoutingDataSource(DataSource primary, DataSource replica, MeterRegistry registry) {
+        setTargetDataSources(Map.of(Route.PRIMARY, primary, Route.REPLICA, replica));
+        setDefaultTargetDataSource(primary);
+        //the share of reads the replica takes off the primary
+        this.primaryConnections = registry.counter("movies.datasource.connections", "route", "primary");
+        this.replicaConnections = registry.counter("movies.datasource.connections", "route", "replica");
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        if (TransactionSynchronizationManager.isCurrentTransactionReadOnly() && !DataSourceRoute.isPinnedToPrimary()) {
+            replicaConnections.increment();
+            return Route.REPLICA;
+        }
+        primaryConnections.increment();
+        return Route.PRIMARY;
+    }
+}
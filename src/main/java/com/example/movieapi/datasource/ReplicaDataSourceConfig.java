@@ -0,0 +1,51 @@
+package com.example.movieapi.datasource;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+
+//movieapi.replica.url set => two hikari pools, reads routed to the replica (ReadWriteRoutingDataSource)
+//not set => none of this exists, boot builds its single spring.datasource pool as before
+@Configuration
+@ConditionalOnProperty("movieapi.replica.url")
+public class ReplicaDataSourceConfig {
+
+    //what boot would have built from spring.datasource.*, pool settings from spring.datasource.hikari.*
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource primaryDataSource(DataSourceProperties properties) {
+        HikariDataSource dataSource = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        dataSource.setPoolName("primary");
+        return dataSource;
+    }
+
+    //same driver and credentials as the primary unless movieapi.replica.hikari.* says otherwise,
+    //its own pool => reads queueing for connections never hold up the writes
+    @Bean
+    @ConfigurationProperties("movieapi.replica.hikari")
+    public HikariDataSource replicaDataSource(DataSourceProperties properties, @Value("${movieapi.replica.url}") String url) {
+        HikariDataSource dataSource = properties.initializeDataSourceBuilder().type(HikariDataSource.class).url(url).build();
+        dataSource.setPoolName("replica");
+        return dataSource;
+    }
+
+    //the one jpa, the sql init scripts and everyone else get => no transaction (scripts, hibernate boot) is the primary
+    @Bean
+    @Primary
+    public DataSource dataSource(@Qualifier("primaryDataSource") DataSource primary,
+                                 @Qualifier("replicaDataSource") DataSource replica, MeterRegistry registry) {
+        ReadWriteRoutingDataSource routing = new ReadWriteRoutingDataSource(primary, replica, registry);
+        routing.afterPropertiesSet();
+        return new LazyConnectionDataSourceProxy(routing);
+    }
+}
@@ -0,0 +1,76 @@
+package com.example.movieapi.datasource;
+
+import com.example.movieapi.limit.ClientKeys;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Set;
+
+//read-your-writes on top of the replica routing:
+//1. a write request runs on the primary from start to end (its reads before the write, e.g. the version check of PUT)
+//2. the same client (ClientKeys) then reads from the primary for lag-tolerance,
+//   the time the replica is allowed to be behind => afterwards the replica has its write
+//other clients read from the replica right away and may see the catalog up to lag-tolerance old
+@Component
+@Profile("!reactive") //the reactive api reads over r2dbc, not through the routing datasource
+@ConditionalOnProperty("movieapi.replica.url")
+@Order(Ordered.HIGHEST_PRECEDENCE + 20)
+public class ReplicaPinningFilter extends OncePerRequestFilter {
+
+    private static final Set<String> SAFE_METHODS = Set.of("GET", "HEAD", "OPTIONS");
+
+    //clients that wrote within lag-tolerance, bounded like the rate limiter's buckets
+    private final ClientKeys clientKeys;
+    private final Cache<String, Boolean> recentWriters;
+    private final Counter pinnedReads;
+
+    public ReplicaPinningFilter(MeterRegistry registry, ClientKeys clientKeys,
+                                @Value("${movieapi.replica.lag-tolerance}") Duration lagTolerance) {
+        this.clientKeys = clientKeys;
+        this.recentWriters = Caffeine.newBuilder().maximumSize(100_000).expireAfterWrite(lagTolerance).build();
+        //reads the primary serves instead of the replica because of a client's own write
+        this.pinnedReads = registry.counter("movies.replica.pinned_reads");
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return request.getRequestURI().startsWith("/actuator");
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        String client = clientKeys.clientKey(request);
+        boolean write = !SAFE_METHODS.contains(request.getMethod());
+        if (!write && recentWriters.getIfPresent(client) == null) {
+            chain.doFilter(request, response);
+            return;
+        }
+        if (!write) {
+            pinnedReads.increment();
+        }
+        try (DataSourceRoute.Pin pin = DataSourceRoute.primary()) {
+            chain.doFilter(request, response);
+        } finally {
+            //counted from the end of the write => after its commit
+            if (write) {
+                recentWriters.put(client, Boolean.TRUE);
+            }
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package com.example.movieapi.datasource;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+//the conditions on movieapi.replica.url are evaluated once by spring AOT when the fast-startup jar is built
+//(see the fast-startup profile in pom.xml) => a jar built without the url would start with a replica url and
+//silently send every read to the primary, this refuses to start instead
+//(the other way round, built with the url and started without it, already fails on the ${movieapi.replica.url})
+@Component
+public class ReplicaWiringCheck {
+
+    public ReplicaWiringCheck(Environment environment, ObjectProvider<ReplicaDataSourceConfig> replicaConfig) {
+        if (StringUtils.hasText(environment.getProperty("movieapi.replica.url")) && replicaConfig.getIfAvailable() == null) {
+            throw new IllegalStateException("movieapi.replica.url is set but this build has no replica data source"
+                    + " => the AOT build was processed without it, rebuild with"
+                    + " mvn -Pfast-startup verify \"-Dfast-startup.jvm-arguments=-Dmovieapi.replica.url=<url>\"");
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package com.example.movieapi.dto;
+
+//outcome of one row of POST /movies/bulk => index is the position of the row in the request
+public class BulkInsertResult {
+
+    //FAILED only comes from an ingest batch (MovieImportService.importBatch), bulk requests fail as a whole
+    public enum Status { ACCEPTED, CONFLICT, INVALID, FAILED }
+
+    private final int index;
+    private final Status status;
+    private final Long id;
+    private final String message;
+
+    public BulkInsertResult(int index, Status status, Long id, String message) {
+        this.index = index;
+        this.status = status;
+        this.id = id;
+        this.message = message;
+    }
+
+    public static BulkInsertResult accepted(int index, Long id) {
+        return new BulkInsertResult(index, Status.ACCEPTED, id, null);
+    }
+
+    public static BulkInsertResult conflict(int index) {
+        return new BulkInsertResult(index, Status.CONFLICT, null, "Movie already exists");
+    }
+
+    public static BulkInsertResult invalid(int index, String message) {
+        return new BulkInsertResult(index, Status.INVALID, null, message);
+    }
+
+    public static BulkInsertResult failed(int index, String message) {
+        return new BulkInsertResult(index, Status.FAILED, null, message);
+    }
+
+    public int getIndex() {
+        return index;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+}
@@ -0,0 +1,5 @@
+package com.example.movieapi.dto;
+
+//one row of "GROUP BY director"
+public record DirectorCount(String director, long count) {
+}
@@ -0,0 +1,38 @@
+package com.example.movieapi.dto;
+
+import java.util.UUID;
+
+//state of one POST /add accepted with "Prefer: respond-async", served by GET /ingest/{ticket}
+public class IngestStatus {
+
+    //QUEUED => in memory only, lost if the process dies; COMMITTED => in the db with the given id
+    public enum Status { QUEUED, COMMITTED, CONFLICT, FAILED }
+
+    private final UUID ticket;
+    private final Status status;
+    private final Long id;
+    private final String message;
+
+    public IngestStatus(UUID ticket, Status status, Long id, String message) {
+        this.ticket = ticket;
+        this.status = status;
+        this.id = id;
+        this.message = message;
+    }
+
+    public UUID getTicket() {
+        return ticket;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+}
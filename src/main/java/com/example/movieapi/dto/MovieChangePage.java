@@ -0,0 +1,9 @@
+package com.example.movieapi.dto;
+
+import com.example.movieapi.model.MovieChange;
+
+import java.util.List;
+
+//one page of GET /movies/changes => "next" is the since of the following call, whether or not changes came back
+public record MovieChangePage(List<MovieChange> changes, long next, boolean hasMore) {
+}
@@ -1,12 +1,20 @@
 package com.example.movieapi.dto;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import org.springframework.hateoas.RepresentationModel;
 
+import java.time.Instant;
+
 public class MovieDTO extends RepresentationModel<MovieDTO> {
     private Long id;
     private String title;
     private String director;
     private int year;
+    //conditional GET only => sent as ETag/Last-Modified headers, not in the body
+    @JsonIgnore
+    private long version;
+    @JsonIgnore
+    private Instant updatedAt;
 
     //default construct =>
     public MovieDTO() {}
@@ -18,6 +26,12 @@ public class MovieDTO extends RepresentationModel<MovieDTO> {
         this.year = year;
     }
 
+    public MovieDTO(Long id, String title, String director, int year, long version, Instant updatedAt) {
+        this(id, title, director, year);
+        this.version = version;
+        this.updatedAt = updatedAt;
+    }
+
     public Long getId() {
         return id;
     }
@@ -50,4 +64,20 @@ public class MovieDTO extends RepresentationModel<MovieDTO> {
         this.year = year;
     }
 
+    public long getVersion() {
+        return version;
+    }
+
+    public void setVersion(long version) {
+        this.version = version;
+    }
+
+    public Instant getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public void setUpdatedAt(Instant updatedAt) {
+        this.updatedAt = updatedAt;
+    }
+
 }
\ No newline at end of file
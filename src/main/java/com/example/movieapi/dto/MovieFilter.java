@@ -0,0 +1,61 @@
+package com.example.movieapi.dto;
+
+//optional criteria for the movie listings, every null field means "no restriction"
+//an exact year wins over the fromYear/toYear range
+public class MovieFilter {
+    private String director;
+    private Integer year;
+    private Integer fromYear;
+    private Integer toYear;
+
+    public MovieFilter() {}
+
+    public MovieFilter(String director, Integer year, Integer fromYear, Integer toYear) {
+        this.director = director;
+        this.year = year;
+        this.fromYear = fromYear;
+        this.toYear = toYear;
+    }
+
+    public String getDirector() {
+        return director;
+    }
+
+    public void setDirector(String director) {
+        this.director = director;
+    }
+
+    public Integer getYear() {
+        return year;
+    }
+
+    public void setYear(Integer year) {
+        this.year = year;
+    }
+
+    public Integer getFromYear() {
+        return fromYear;
+    }
+
+    public void setFromYear(Integer fromYear) {
+        this.fromYear = fromYear;
+    }
+
+    public Integer getToYear() {
+        return toYear;
+    }
+
+    public void setToYear(Integer toYear) {
+        this.toYear = toYear;
+    }
+
+    //lower bound actually used in the query
+    public Integer lowerYear() {
+        return year != null ? year : fromYear;
+    }
+
+    //upper bound actually used in the query
+    public Integer upperYear() {
+        return year != null ? year : toYear;
+    }
+}
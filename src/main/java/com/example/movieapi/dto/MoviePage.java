@@ -0,0 +1,39 @@
+package com.example.movieapi.dto;
+
+import java.util.List;
+
+//one keyset page of movies => the cursors are the ids of the first and last row,
+//clients never page with OFFSET so the cost of a page does not grow with its position
+public class MoviePage {
+    private final List<MovieDTO> movies;
+    private final boolean hasNext;
+    private final boolean hasPrevious;
+
+    public MoviePage(List<MovieDTO> movies, boolean hasNext, boolean hasPrevious) {
+        this.movies = movies;
+        this.hasNext = hasNext;
+        this.hasPrevious = hasPrevious;
+    }
+
+    public List<MovieDTO> getMovies() {
+        return movies;
+    }
+
+    public boolean hasNext() {
+        return hasNext;
+    }
+
+    public boolean hasPrevious() {
+        return hasPrevious;
+    }
+
+    //cursor for the "next" link
+    public Long lastId() {
+        return movies.isEmpty() ? null : movies.get(movies.size() - 1).getId();
+    }
+
+    //cursor for the "prev" link
+    public Long firstId() {
+        return movies.isEmpty() ? null : movies.get(0).getId();
+    }
+}
@@ -0,0 +1,50 @@
+package com.example.movieapi.dto;
+
+//body of PATCH /movies => the fields to set on every selected movie, null fields are left as they are
+public class MoviePatch {
+    private String title;
+    private String director;
+    private Integer year;
+
+    public MoviePatch() {}
+
+    public MoviePatch(String title, String director, Integer year) {
+        this.title = title;
+        this.director = director;
+        this.year = year;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public void setTitle(String title) {
+        this.title = title;
+    }
+
+    public String getDirector() {
+        return director;
+    }
+
+    public void setDirector(String director) {
+        this.director = director;
+    }
+
+    public Integer getYear() {
+        return year;
+    }
+
+    public void setYear(Integer year) {
+        this.year = year;
+    }
+
+    //same rules as a whole movie, for the fields that are present
+    public boolean isValid() {
+        if (title == null && director == null && year == null) {
+            return false;
+        }
+        return (title == null || !title.trim().isEmpty())
+                && (director == null || !director.trim().isEmpty())
+                && (year == null || year >= 1900);
+    }
+}
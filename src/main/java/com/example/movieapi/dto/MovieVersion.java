@@ -0,0 +1,7 @@
+package com.example.movieapi.dto;
+
+import java.time.Instant;
+
+//what a conditional GET needs to know about a movie => ETag and Last-Modified, without title/director/year
+public record MovieVersion(long version, Instant updatedAt) {
+}
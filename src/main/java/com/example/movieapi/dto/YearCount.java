@@ -0,0 +1,5 @@
+package com.example.movieapi.dto;
+
+//one row of "GROUP BY year"
+public record YearCount(int year, long count) {
+}
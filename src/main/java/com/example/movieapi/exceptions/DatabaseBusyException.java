@@ -0,0 +1,8 @@
+package com.example.movieapi.exceptions;
+public class DatabaseBusyException extends RuntimeException {
+
+    public DatabaseBusyException(long waitedMillis) {
+        super("Database busy, no slot freed up within " + waitedMillis + " ms");
+    }
+
+}
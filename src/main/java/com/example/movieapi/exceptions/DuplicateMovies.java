@@ -0,0 +1,29 @@
+package com.example.movieapi.exceptions;
+
+import org.hibernate.exception.ConstraintViolationException;
+import org.springframework.dao.DataIntegrityViolationException;
+
+import java.util.Locale;
+
+//unique index on (title, director, year) => the one integrity violation that is the client's doing (409, CONFLICT row)
+//any other one (not null, too long, another key, ...) is a bug on our side and must not be reported as a duplicate
+public final class DuplicateMovies {
+
+    //see Movie and schema.sql
+    private static final String MOVIE_UNIQUE_KEY = "uk_movies_title_director_year";
+
+    private DuplicateMovies() {
+    }
+
+    //hibernate names the violated constraint (h2 reports the index behind it, e.g. PUBLIC.UK_..._INDEX_8),
+    //plain jdbc only has it in the database's message
+    public static boolean isDuplicateMovie(DataIntegrityViolationException ex) {
+        for (Throwable cause = ex; cause != null; cause = cause.getCause()) {
+            if (cause instanceof ConstraintViolationException violation && violation.getConstraintName() != null) {
+                return violation.getConstraintName().toLowerCase(Locale.ROOT).contains(MOVIE_UNIQUE_KEY);
+            }
+        }
+        String message = ex.getMostSpecificCause().getMessage();
+        return message != null && message.toLowerCase(Locale.ROOT).contains(MOVIE_UNIQUE_KEY);
+    }
+}
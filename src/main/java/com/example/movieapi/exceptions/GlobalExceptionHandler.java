@@ -1,10 +1,14 @@
 package com.example.movieapi.exceptions;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ControllerAdvice;
 import org.springframework.web.bind.annotation.ExceptionHandler;
-import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.method.annotation.MethodArgumentTypeMismatchException;
 
 import java.time.LocalDateTime;
@@ -16,8 +20,11 @@ import java.util.Map;
 @ControllerAdvice
 public class GlobalExceptionHandler {
 
+    private static final Logger logger = LoggerFactory.getLogger(GlobalExceptionHandler.class);
+
     @ExceptionHandler(MovieNotFoundException.class)
-    public ResponseEntity<Object> handleMovieNotFoundException(MovieNotFoundException ex, WebRequest request) {
+    //no servlet-only parameters => the same advice also serves the WebFlux controller
+    public ResponseEntity<Object> handleMovieNotFoundException(MovieNotFoundException ex) {
         Map<String, Object> body = new LinkedHashMap<>();
         body.put("timestamp", LocalDateTime.now());
         body.put("message", ex.getMessage());
@@ -25,6 +32,88 @@ public class GlobalExceptionHandler {
         return new ResponseEntity<>(body, HttpStatus.NOT_FOUND);
     }
 
+    //unique index on (title, director, year) => a duplicate add/update ends here
+    //any other violation (not null, another key, ...) is a bug on our side, not the client's => 500
+    @ExceptionHandler(DataIntegrityViolationException.class)
+    public ResponseEntity<Object> handleDataIntegrityViolation(DataIntegrityViolationException ex) {
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("timestamp", LocalDateTime.now());
+        if (!DuplicateMovies.isDuplicateMovie(ex)) {
+            logger.error("Data integrity violation", ex);
+            body.put("status", HttpStatus.INTERNAL_SERVER_ERROR.value());
+            body.put("error", HttpStatus.INTERNAL_SERVER_ERROR.getReasonPhrase());
+            return new ResponseEntity<>(body, HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+        // Log because it doesn't show me the exception in the console
+        logger.error("Conflict: {}", ex.getMostSpecificCause().getMessage());
+
+        body.put("status", HttpStatus.CONFLICT.value());
+        body.put("error", HttpStatus.CONFLICT.getReasonPhrase());
+        body.put("message", "Movie already exists");
+
+        return new ResponseEntity<>(body, HttpStatus.CONFLICT);
+    }
+
+    //@Version check at flush => another update committed between our read and our write
+    @ExceptionHandler(OptimisticLockingFailureException.class)
+    public ResponseEntity<Object> handleOptimisticLockingFailure(OptimisticLockingFailureException ex) {
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("timestamp", LocalDateTime.now());
+        body.put("status", HttpStatus.CONFLICT.value());
+        body.put("error", HttpStatus.CONFLICT.getReasonPhrase());
+        body.put("message", "Movie was modified concurrently, fetch it again");
+
+        return new ResponseEntity<>(body, HttpStatus.CONFLICT);
+    }
+
+    //DatabaseConcurrencyLimiter ran out of slots => tell the client to come back shortly
+    @ExceptionHandler(DatabaseBusyException.class)
+    public ResponseEntity<Object> handleDatabaseBusy(DatabaseBusyException ex) {
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("timestamp", LocalDateTime.now());
+        body.put("message", ex.getMessage());
+
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .body(body);
+    }
+
+    //RequestLimitFilter => this client spent its tokens, Retry-After says when the next request fits
+    @ExceptionHandler(RateLimitExceededException.class)
+    public ResponseEntity<Object> handleRateLimitExceeded(RateLimitExceededException ex) {
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("timestamp", LocalDateTime.now());
+        body.put("message", ex.getMessage());
+
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(ex.getRetryAfterSeconds()))
+                .body(body);
+    }
+
+    //RequestLimitFilter => latency went over its target, requests beyond the adaptive limit are shed
+    @ExceptionHandler(OverloadedException.class)
+    public ResponseEntity<Object> handleOverloaded(OverloadedException ex) {
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("timestamp", LocalDateTime.now());
+        body.put("message", ex.getMessage());
+
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .body(body);
+    }
+
+    //async ingest can't keep up => backpressure on the feeds instead of an unbounded queue
+    @ExceptionHandler(IngestQueueFullException.class)
+    public ResponseEntity<Object> handleIngestQueueFull(IngestQueueFullException ex) {
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("timestamp", LocalDateTime.now());
+        body.put("message", ex.getMessage());
+
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .body(body);
+    }
+
     @ExceptionHandler(MethodArgumentTypeMismatchException.class)
     public ResponseEntity<String> handleTypeMismatch(MethodArgumentTypeMismatchException ex) {
         String message = String.format("The parameter '%s' of value '%s' could not be converted to type '%s'",
@@ -0,0 +1,9 @@
+package com.example.movieapi.exceptions;
+
+public class IngestQueueFullException extends RuntimeException {
+
+    public IngestQueueFullException(int capacity) {
+        super("Ingest queue full (" + capacity + " movies waiting), retry later");
+    }
+
+}
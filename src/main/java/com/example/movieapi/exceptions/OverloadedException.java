@@ -0,0 +1,9 @@
+package com.example.movieapi.exceptions;
+
+public class OverloadedException extends RuntimeException {
+
+    public OverloadedException(int limit) {
+        super("Server overloaded (" + limit + " requests in flight), retry later");
+    }
+
+}
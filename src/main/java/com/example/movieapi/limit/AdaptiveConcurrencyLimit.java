@@ -0,0 +1,71 @@
+package com.example.movieapi.limit;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+//AIMD limit on the requests in flight => a response slower than the target shrinks the limit by 10%, at most once
+//per target-long window, a fast one while the limit is actually being used grows it by one, so it settles around
+//what the server can serve within the target, without being configured for this machine or this database
+public class AdaptiveConcurrencyLimit {
+
+    private static final double BACKOFF = 0.9;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final long targetNanos;
+    private final AtomicInteger limit;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    //no decrease before this => the requests already in flight when the server slowed down all come back slow,
+    //one decrease per sample would take the limit to its minimum on a single hiccup
+    private final AtomicLong nextDecrease = new AtomicLong(Long.MIN_VALUE);
+
+    public AdaptiveConcurrencyLimit(int initialLimit, int minLimit, int maxLimit, long targetNanos) {
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.targetNanos = targetNanos;
+        this.limit = new AtomicInteger(initialLimit);
+    }
+
+    //false => over the limit, the caller sheds the request
+    public boolean tryAcquire() {
+        while (true) {
+            int current = inFlight.get();
+            if (current >= limit.get()) {
+                return false;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    //latency < 0 => no sample (request failed before doing any work, or is long-lived by design)
+    public void release(long latencyNanos) {
+        release(latencyNanos, System.nanoTime());
+    }
+
+    //now => System.nanoTime(), passed in so tests control the windows
+    public void release(long latencyNanos, long now) {
+        int current = inFlight.getAndDecrement();
+        if (latencyNanos < 0) {
+            return;
+        }
+        if (latencyNanos > targetNanos) {
+            long next = nextDecrease.get();
+            if (now >= next && nextDecrease.compareAndSet(next, now + targetNanos)) {
+                limit.updateAndGet(l -> Math.max(minLimit, (int) (l * BACKOFF)));
+            }
+        } else if (current * 2 >= limit.get()) {
+            //only grow when at least half the limit was in use, an idle server learns nothing about its capacity
+            limit.updateAndGet(l -> Math.min(maxLimit, l + 1));
+        }
+    }
+
+    public int getLimit() {
+        return limit.get();
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+}
@@ -0,0 +1,28 @@
+package com.example.movieapi.limit;
+
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Set;
+
+//who a request counts against => its X-API-Key when that is one of movieapi.api-keys, else its address
+//(behind a proxy: server.forward-headers-strategy makes that the client address)
+//an unknown key is ignored => a made-up value per request would otherwise get a fresh rate limit bucket every time
+//used by RequestLimitFilter (rate limit buckets) and ReplicaPinningFilter (read-your-writes)
+@Component
+public class ClientKeys {
+
+    public static final String API_KEY_HEADER = "X-API-Key";
+
+    private final Set<String> apiKeys;
+
+    public ClientKeys(@Value("${movieapi.api-keys}") Set<String> apiKeys) {
+        this.apiKeys = Set.copyOf(apiKeys);
+    }
+
+    public String clientKey(HttpServletRequest request) {
+        String apiKey = request.getHeader(API_KEY_HEADER);
+        return apiKey != null && apiKeys.contains(apiKey) ? "key:" + apiKey : "ip:" + request.getRemoteAddr();
+    }
+}
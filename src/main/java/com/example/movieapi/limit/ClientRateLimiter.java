@@ -0,0 +1,54 @@
+package com.example.movieapi.limit;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+//token bucket per client as GCRA (generic cell rate algorithm) => one long per client, the "theoretical arrival
+//time" at which its bucket is full again, moved forward by cost * interval with a CAS => no lock, no refill thread
+//the buckets live in a concurrent map (striped internally), idle clients drop out once their bucket is full again
+public class ClientRateLimiter {
+
+    //bounds the memory taken by clients, an evicted client simply starts with a full bucket
+    private static final int MAX_CLIENTS = 100_000;
+
+    //time one token takes to come back
+    private final long intervalNanos;
+    //how far ahead of "now" a client may run => burst tokens at once
+    private final long toleranceNanos;
+    private final Cache<String, AtomicLong> buckets;
+
+    public ClientRateLimiter(double tokensPerSecond, int burst) {
+        this.intervalNanos = (long) (TimeUnit.SECONDS.toNanos(1) / tokensPerSecond);
+        this.toleranceNanos = intervalNanos * burst;
+        this.buckets = Caffeine.newBuilder()
+                .maximumSize(MAX_CLIENTS)
+                .expireAfterAccess(Duration.ofNanos(toleranceNanos).plusSeconds(1))
+                .build();
+    }
+
+    //0 => allowed and charged, otherwise nothing is charged and the value is the wait (nanos) until cost tokens fit
+    public long tryAcquire(String client, int cost, long now) {
+        AtomicLong arrival = buckets.get(client, key -> new AtomicLong(Long.MIN_VALUE));
+        long increment = intervalNanos * cost;
+        while (true) {
+            long current = arrival.get();
+            //never used or idle long enough => full bucket
+            long next = (current == Long.MIN_VALUE || current - now < 0 ? now : current) + increment;
+            long wait = next - now - toleranceNanos;
+            if (wait > 0) {
+                return wait;
+            }
+            if (arrival.compareAndSet(current, next)) {
+                return 0;
+            }
+        }
+    }
+
+    public long clients() {
+        return buckets.estimatedSize();
+    }
+}
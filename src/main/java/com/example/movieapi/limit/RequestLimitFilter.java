@@ -0,0 +1,153 @@
+package com.example.movieapi.limit;
+
+import com.example.movieapi.exceptions.OverloadedException;
+import com.example.movieapi.exceptions.RateLimitExceededException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpMethod;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerExceptionResolver;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+//in front of every route (before the payload cache and the controllers, after the http.server.requests observation):
+//1. per client token bucket, each request costs according to the work behind its route => 429 + Retry-After
+//2. adaptive limit on the requests in flight, shrinking while responses are slower than the target => 503
+//rejections go through GlobalExceptionHandler like any other error
+@Component
+@Profile("!reactive") //servlet filter, errors rendered through the mvc exception resolvers
+@Order(Ordered.HIGHEST_PRECEDENCE + 10)
+public class RequestLimitFilter extends OncePerRequestFilter {
+
+    //streams that last as long as the catalog (or the connection) is long => not a latency sample
+    private static final Set<String> LONG_RUNNING = Set.of("/movies/export", "/movies/changes/stream");
+
+    private final ClientKeys clientKeys;
+    private final ClientRateLimiter rateLimiter;
+    private final AdaptiveConcurrencyLimit concurrencyLimit;
+    private final HandlerExceptionResolver exceptionResolver;
+    private final Counter rateLimited;
+    private final Counter shed;
+
+    public RequestLimitFilter(@Qualifier("handlerExceptionResolver") HandlerExceptionResolver exceptionResolver,
+                              MeterRegistry registry, ClientKeys clientKeys,
+                              @Value("${movieapi.rate-limit.rate}") double rate,
+                              @Value("${movieapi.rate-limit.burst}") int burst,
+                              @Value("${movieapi.concurrency.initial-limit}") int initialLimit,
+                              @Value("${movieapi.concurrency.min-limit}") int minLimit,
+                              @Value("${movieapi.concurrency.max-limit}") int maxLimit,
+                              @Value("${movieapi.concurrency.latency-target}") Duration latencyTarget) {
+        this.exceptionResolver = exceptionResolver;
+        this.clientKeys = clientKeys;
+        //0 => that limit is off
+        this.rateLimiter = rate > 0 ? new ClientRateLimiter(rate, burst) : null;
+        this.concurrencyLimit = initialLimit > 0
+                ? new AdaptiveConcurrencyLimit(initialLimit, minLimit, maxLimit, latencyTarget.toNanos()) : null;
+
+        this.rateLimited = registry.counter("movies.requests.rejected", "reason", "rate_limit");
+        this.shed = registry.counter("movies.requests.rejected", "reason", "overload");
+        if (rateLimiter != null) {
+            Gauge.builder("movies.rate_limit.clients", rateLimiter, ClientRateLimiter::clients).register(registry);
+        }
+        if (concurrencyLimit != null) {
+            Gauge.builder("movies.concurrency.limit", concurrencyLimit, AdaptiveConcurrencyLimit::getLimit).register(registry);
+            Gauge.builder("movies.concurrency.in_flight", concurrencyLimit, AdaptiveConcurrencyLimit::getInFlight)
+                    .register(registry);
+        }
+    }
+
+    //scraping and health checks must keep working while clients are throttled
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return request.getRequestURI().startsWith("/actuator");
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        long start = System.nanoTime();
+        if (rateLimiter != null) {
+            long wait = rateLimiter.tryAcquire(clientKeys.clientKey(request), cost(request), start);
+            if (wait > 0) {
+                rateLimited.increment();
+                //whole seconds, rounded up
+                reject(request, response, new RateLimitExceededException(TimeUnit.NANOSECONDS.toSeconds(wait - 1) + 1));
+                return;
+            }
+        }
+        if (concurrencyLimit == null) {
+            chain.doFilter(request, response);
+            return;
+        }
+        if (!concurrencyLimit.tryAcquire()) {
+            shed.increment();
+            reject(request, response, new OverloadedException(concurrencyLimit.getLimit()));
+            return;
+        }
+        long latency = -1;
+        try {
+            chain.doFilter(request, response);
+            //an async response (SSE, ...) is still running => its duration says nothing about the load
+            if (!request.isAsyncStarted() && !LONG_RUNNING.contains(request.getRequestURI())) {
+                latency = System.nanoTime() - start;
+            }
+        } finally {
+            concurrencyLimit.release(latency);
+        }
+    }
+
+    private void reject(HttpServletRequest request, HttpServletResponse response, RuntimeException ex) {
+        exceptionResolver.resolveException(request, response, null, ex);
+    }
+
+    //tokens per request, roughly the rows read and serialized behind the route
+    static int cost(HttpServletRequest request) {
+        String path = request.getRequestURI();
+        String method = request.getMethod();
+        if (HttpMethod.GET.matches(method)) {
+            if (path.equals("/movies/export")) {
+                return 100;
+            }
+            if (path.equals("/movies") || path.equals("/simple") || path.equals("/movies/search")) {
+                //one token per started 100 movies of the page, at least two
+                return 1 + Math.max(1, (limit(request, 100) + 99) / 100);
+            }
+            if (path.equals("/movies/changes")) {
+                return 1 + Math.max(1, (limit(request, 1000) + 99) / 100);
+            }
+            return 1;
+        }
+        //set-based writes and bulk imports touch many rows per request
+        if (path.equals("/movies") || path.equals("/movies/bulk")) {
+            return 20;
+        }
+        return 2;
+    }
+
+    private static int limit(HttpServletRequest request, int defaultLimit) {
+        String limit = request.getParameter("limit");
+        if (limit == null) {
+            return defaultLimit;
+        }
+        try {
+            //out of range values are refused by the controller, they only need a sane cost here
+            return Math.min(Math.max(Integer.parseInt(limit), 1), 1000);
+        } catch (NumberFormatException e) {
+            return defaultLimit;
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package com.example.movieapi.metrics;
+
+import io.micrometer.core.aop.TimedAspect;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.hibernate.cfg.AvailableSettings;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+//application metrics on top of what actuator already binds (http.server.requests, hikaricp.*, cache.*, jvm.*)
+//buckets and percentile histograms are set in application.properties
+@Configuration
+public class MetricsConfig implements WebMvcConfigurer {
+
+    private final RequestStatementsInterceptor requestStatementsInterceptor;
+
+    public MetricsConfig(RequestStatementsInterceptor requestStatementsInterceptor) {
+        this.requestStatementsInterceptor = requestStatementsInterceptor;
+    }
+
+    //makes @Timed work on any bean (MovieController => movies.controller, MovieService => movies.service)
+    @Bean
+    public TimedAspect timedAspect(MeterRegistry registry) {
+        return new TimedAspect(registry);
+    }
+
+    //every statement hibernate prepares goes through the counter
+    @Bean
+    public HibernatePropertiesCustomizer statementCounterCustomizer(SqlStatementCounter statementCounter) {
+        return properties -> properties.put(AvailableSettings.STATEMENT_INSPECTOR, statementCounter);
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(requestStatementsInterceptor);
+    }
+}
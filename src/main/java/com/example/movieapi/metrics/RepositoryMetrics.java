@@ -0,0 +1,75 @@
+package com.example.movieapi.metrics;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.springframework.aop.framework.AopProxyUtils;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+//duration and number of sql statements of every repository call, tagged "MovieRepository.findPageAfter" etc.
+//ordered after DatabaseConcurrencyLimiter => the time spent waiting for a permit is not counted as db time
+@Aspect
+@Component
+@Order(1)
+public class RepositoryMetrics {
+
+    private final MeterRegistry registry;
+    private final SqlStatementCounter statementCounter;
+    //meters resolved once per repository method => no tag building on the hot path
+    private final ClassValue<ConcurrentMap<Method, Meters>> meters = new ClassValue<>() {
+        @Override
+        protected ConcurrentMap<Method, Meters> computeValue(Class<?> type) {
+            return new ConcurrentHashMap<>();
+        }
+    };
+
+    private record Meters(Timer duration, DistributionSummary statements) {}
+
+    public RepositoryMetrics(MeterRegistry registry, SqlStatementCounter statementCounter) {
+        this.registry = registry;
+        this.statementCounter = statementCounter;
+    }
+
+    @Around("this(org.springframework.data.repository.Repository)")
+    public Object record(ProceedingJoinPoint joinPoint) throws Throwable {
+        Object repository = joinPoint.getThis();
+        Method method = ((MethodSignature) joinPoint.getSignature()).getMethod();
+        Meters meters = this.meters.get(repository.getClass())
+                .computeIfAbsent(method, m -> register(repository, m));
+
+        long statementsBefore = statementCounter.current();
+        long start = System.nanoTime();
+        try {
+            return joinPoint.proceed();
+        } finally {
+            meters.duration().record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            meters.statements().record(statementCounter.current() - statementsBefore);
+        }
+    }
+
+    private Meters register(Object repository, Method method) {
+        //the spring data proxy implements the user interface => MovieRepository, even for inherited methods like findById
+        Class<?>[] interfaces = AopProxyUtils.proxiedUserInterfaces(repository);
+        String name = (interfaces.length > 0 ? interfaces[0].getSimpleName() : method.getDeclaringClass().getSimpleName())
+                + "." + method.getName();
+        return new Meters(
+                Timer.builder("movies.repository")
+                        .description("Duration of the repository calls")
+                        .tag("method", name)
+                        .register(registry),
+                DistributionSummary.builder("movies.sql.statements")
+                        .description("SQL statements issued by one repository call")
+                        .tag("method", name)
+                        .register(registry));
+    }
+}
@@ -0,0 +1,49 @@
+package com.example.movieapi.metrics;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+//sql statements issued per request, tagged with the route like http.server.requests
+//only the request thread is seen => the async part of /movies/export is not counted
+@Component
+public class RequestStatementsInterceptor implements HandlerInterceptor {
+
+    private static final String STATEMENTS_BEFORE = RequestStatementsInterceptor.class.getName() + ".statements";
+
+    private final MeterRegistry registry;
+    private final SqlStatementCounter statementCounter;
+    private final ConcurrentMap<String, DistributionSummary> summaries = new ConcurrentHashMap<>();
+
+    public RequestStatementsInterceptor(MeterRegistry registry, SqlStatementCounter statementCounter) {
+        this.registry = registry;
+        this.statementCounter = statementCounter;
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        request.setAttribute(STATEMENTS_BEFORE, statementCounter.current());
+        return true;
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        if (!(request.getAttribute(STATEMENTS_BEFORE) instanceof Long before)) {
+            return;
+        }
+        Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        String uri = pattern != null ? pattern.toString() : "UNKNOWN";
+        summaries.computeIfAbsent(uri, u -> DistributionSummary.builder("movies.sql.request.statements")
+                        .description("SQL statements issued by one request")
+                        .tag("uri", u)
+                        .register(registry))
+                .record(statementCounter.current() - before);
+    }
+}
@@ -0,0 +1,23 @@
+package com.example.movieapi.metrics;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.springframework.stereotype.Component;
+
+//counts the sql statements hibernate prepares on the current thread
+//callers read the counter before and after a piece of work => the difference is what that work issued
+@Component
+public class SqlStatementCounter implements StatementInspector {
+
+    private static final ThreadLocal<long[]> STATEMENTS = ThreadLocal.withInitial(() -> new long[1]);
+
+    @Override
+    public String inspect(String sql) {
+        STATEMENTS.get()[0]++;
+        //unchanged => the statement is only observed
+        return sql;
+    }
+
+    public long current() {
+        return STATEMENTS.get()[0];
+    }
+}
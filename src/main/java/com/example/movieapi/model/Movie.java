@@ -1,8 +1,14 @@
 package com.example.movieapi.model;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
 import lombok.*;
+import org.hibernate.annotations.UpdateTimestamp;
+
+import java.time.Instant;
 @Entity
-@Table(name="Movies")
+//the unique index is what rejects duplicates, no check-then-insert round trip
+@Table(name="Movies", uniqueConstraints = @UniqueConstraint(name = "uk_movies_title_director_year",
+        columnNames = {"title", "director", "\"year\""}))
 @NoArgsConstructor
 @AllArgsConstructor
 @Setter
@@ -10,12 +16,23 @@ import lombok.*;
 @ToString
 public class Movie {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    //pooled sequence instead of IDENTITY => hibernate knows the ids before the insert and can batch them
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "movies_seq")
+    @SequenceGenerator(name = "movies_seq", sequenceName = "movies_seq", allocationSize = 50)
     private Long id;
     private String title;
     private String director;
     @Column(name = "\"year\"")
     private int year;
+    //bumped by hibernate on every update => ETag of the movie, a stale update fails instead of overwriting
+    //not part of the json body, clients get both through the ETag/Last-Modified headers
+    @Version
+    @JsonIgnore
+    private long version;
+    @UpdateTimestamp
+    @Column(name = "updated_at")
+    @JsonIgnore
+    private Instant updatedAt;
 
     //AllArgsConstructor takes the place of all this => when all class fields are initialized at the object creation
     //RequiredArgsConstructor => for required and optional fields => enforces initialization (through the constructor) only for required fields
@@ -0,0 +1,62 @@
+package com.example.movieapi.model;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+//one row of the change feed => what a downstream copy needs to apply the change without reading the movie again
+@Entity
+@Table(name = "movie_changes")
+@NoArgsConstructor
+@Getter
+public class MovieChange {
+
+    public enum Type { INSERT, UPDATE, DELETE }
+
+    //taken from movie_changes_seq by MovieChangeLog right before the commit
+    @Id
+    private Long seq;
+    @Column(name = "movie_id")
+    private long movieId;
+    @Enumerated(EnumType.STRING)
+    @Column(name = "change_type")
+    private Type type;
+    private String title;
+    private String director;
+    @Column(name = "\"year\"")
+    private Integer year;
+    private Long version;
+    @Column(name = "changed_at")
+    private Instant changedAt;
+
+    private MovieChange(long movieId, Type type, String title, String director, Integer year, Long version) {
+        this.movieId = movieId;
+        this.type = type;
+        this.title = title;
+        this.director = director;
+        this.year = year;
+        this.version = version;
+        this.changedAt = Instant.now();
+    }
+
+    public static MovieChange inserted(Movie movie) {
+        return new MovieChange(movie.getId(), Type.INSERT, movie.getTitle(), movie.getDirector(), movie.getYear(),
+                movie.getVersion());
+    }
+
+    public static MovieChange updated(long id, String title, String director, int year, long version) {
+        return new MovieChange(id, Type.UPDATE, title, director, year, version);
+    }
+
+    public static MovieChange deleted(long id) {
+        return new MovieChange(id, Type.DELETE, null, null, null, null);
+    }
+
+    //stamped when the seq is taken => a later seq never has an earlier time on the same host
+    public void setSeq(long seq, Instant changedAt) {
+        this.seq = seq;
+        this.changedAt = changedAt;
+    }
+}
@@ -0,0 +1,109 @@
+package com.example.movieapi.repository;
+
+import com.example.movieapi.exceptions.DatabaseBusyException;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+//bounds how many requests work against the db at once
+//with virtual threads thousands of requests can be in flight, without this they would all queue inside hikari
+//until its connection-timeout => here the extra ones wait at most acquire-timeout and then get a 503
+//ordered before the transaction advice => the permit is taken before a transaction grabs a connection
+@Aspect
+@Component
+@Order(0)
+public class DatabaseConcurrencyLimiter {
+
+    //nested calls (repository inside a @Transactional service method) reuse the permit of the outer call
+    private static final ThreadLocal<int[]> DEPTH = ThreadLocal.withInitial(() -> new int[1]);
+
+    private final Semaphore permits;
+    private final long acquireTimeoutMillis;
+
+    public DatabaseConcurrencyLimiter(@Value("${movieapi.db.max-concurrency}") int maxConcurrency,
+                                      @Value("${movieapi.db.acquire-timeout}") Duration acquireTimeout) {
+        //fair => first come first served, no starvation under overload
+        this.permits = new Semaphore(maxConcurrency, true);
+        this.acquireTimeoutMillis = acquireTimeout.toMillis();
+    }
+
+    @Around("this(org.springframework.data.repository.Repository)"
+            + " || @annotation(org.springframework.transaction.annotation.Transactional)")
+    public Object limit(ProceedingJoinPoint joinPoint) throws Throwable {
+        boolean acquired = enter();
+        try {
+            return joinPoint.proceed();
+        } finally {
+            exit(acquired);
+        }
+    }
+
+    //same for programmatic transactions, the pointcut above never sees them => LimitedTransactionTemplate
+    public <T> T limit(Supplier<T> work) {
+        boolean acquired = enter();
+        try {
+            return work.get();
+        } finally {
+            exit(acquired);
+        }
+    }
+
+    //scheduled jobs (change log poll and prune, count reconciliation) => not requests: they neither wait for nor take
+    //a request permit, a db busy with requests does not stop them and they never push a request into a 503
+    //the calls inside run as nested ones => pass without a permit
+    public <T> T outsideLimit(Supplier<T> work) {
+        int[] depth = DEPTH.get();
+        depth[0]++;
+        try {
+            return work.get();
+        } finally {
+            depth[0]--;
+        }
+    }
+
+    public void outsideLimit(Runnable work) {
+        outsideLimit(() -> {
+            work.run();
+            return null;
+        });
+    }
+
+    //true => this call took the permit and gives it back in exit()
+    private boolean enter() {
+        int[] depth = DEPTH.get();
+        if (depth[0] == 0) {
+            boolean acquired = false;
+            try {
+                acquired = permits.tryAcquire(acquireTimeoutMillis, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (!acquired) {
+                throw new DatabaseBusyException(acquireTimeoutMillis);
+            }
+            depth[0]++;
+            return true;
+        }
+        depth[0]++;
+        return false;
+    }
+
+    private void exit(boolean acquired) {
+        DEPTH.get()[0]--;
+        if (acquired) {
+            permits.release();
+        }
+    }
+
+    public int availablePermits() {
+        return permits.availablePermits();
+    }
+}
@@ -0,0 +1,23 @@
+package com.example.movieapi.repository;
+
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+//a TransactionTemplate that takes a DatabaseConcurrencyLimiter permit before the transaction grabs a connection
+//=> programmatic transactions are bounded like the @Transactional and repository calls
+//executeWithoutResult goes through execute, so both are covered
+public class LimitedTransactionTemplate extends TransactionTemplate {
+
+    private final DatabaseConcurrencyLimiter limiter;
+
+    public LimitedTransactionTemplate(PlatformTransactionManager transactionManager, DatabaseConcurrencyLimiter limiter) {
+        super(transactionManager);
+        this.limiter = limiter;
+    }
+
+    @Override
+    public <T> T execute(TransactionCallback<T> action) {
+        return limiter.limit(() -> super.execute(action));
+    }
+}
@@ -0,0 +1,45 @@
+package com.example.movieapi.repository;
+
+import com.example.movieapi.model.MovieChange;
+import jakarta.persistence.QueryHint;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.List;
+
+import static org.hibernate.jpa.HibernateHints.HINT_READ_ONLY;
+
+@Repository
+public interface MovieChangeRepository extends JpaRepository<MovieChange, Long> {
+
+    //one page of the feed => walks the primary key, upTo keeps seqs of still open transactions out
+    @QueryHints(@QueryHint(name = HINT_READ_ONLY, value = "true"))
+    @Query("SELECT c FROM MovieChange c WHERE c.seq > :since AND c.seq <= :upTo ORDER BY c.seq ASC")
+    List<MovieChange> findPage(@Param("since") long since, @Param("upTo") long upTo, Pageable limit);
+
+    //count seqs of movie_changes_seq in one round trip, every jvm on the database draws from the same sequence
+    @Query(value = "SELECT NEXT VALUE FOR movie_changes_seq FROM SYSTEM_RANGE(1, :count)", nativeQuery = true)
+    List<Long> nextSeqs(@Param("count") int count);
+
+    @Query("SELECT MAX(c.seq) FROM MovieChange c")
+    Long findMaxSeq();
+
+    @Query("SELECT MIN(c.seq) FROM MovieChange c")
+    Long findMinSeq();
+
+    //pruning => everything up to the newest change older than the cutoff, so what is kept has no holes
+    @Query("SELECT MAX(c.seq) FROM MovieChange c WHERE c.changedAt < :cutoff")
+    Long findMaxSeqBefore(@Param("cutoff") Instant cutoff);
+
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM MovieChange c WHERE c.seq <= :seq")
+    int deleteUpTo(@Param("seq") long seq);
+}
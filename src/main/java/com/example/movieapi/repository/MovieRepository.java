@@ -1,10 +1,139 @@
 package com.example.movieapi.repository;
 
+import com.example.movieapi.dto.DirectorCount;
+import com.example.movieapi.dto.MovieDTO;
+import com.example.movieapi.dto.MovieVersion;
+import com.example.movieapi.dto.YearCount;
 import com.example.movieapi.model.Movie;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.HibernateHints.HINT_FETCH_SIZE;
+import static org.hibernate.jpa.HibernateHints.HINT_READ_ONLY;
 
 @Repository //provides automatic translation of exceptions
 public interface MovieRepository extends JpaRepository<Movie, Long> {
-    boolean existsByTitleAndDirectorAndYear(String title, String director, int year);
+    //read endpoints select straight into the response type
+    String DTO_COLUMNS = "new com.example.movieapi.dto.MovieDTO(m.id, m.title, m.director, m.year, m.version, m.updatedAt)";
+
+    //GET /movies/{id} on a cache miss
+    //declared query methods get no transaction from SimpleJpaRepository's readOnly (that only covers the inherited
+    //CRUD methods) => annotated here, so the miss runs read-only (replica routing, no flush) and a cache hit,
+    //which never calls the repository, still takes no connection
+    @Transactional(readOnly = true)
+    @Query("SELECT " + DTO_COLUMNS + " FROM Movie m WHERE m.id = :id")
+    Optional<MovieDTO> findDtoById(@Param("id") long id);
+
+    //conditional GET => two columns through the primary key, title/director/year are never read
+    @Transactional(readOnly = true)
+    @Query("SELECT new com.example.movieapi.dto.MovieVersion(m.version, m.updatedAt) FROM Movie m WHERE m.id = :id")
+    Optional<MovieVersion> findVersionById(@Param("id") long id);
+
+    //single DELETE statement, the row count tells whether this call is the one that removed the movie
+    //(no load + remove, and a concurrent delete of the same id is not counted twice)
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM Movie m WHERE m.id = :id")
+    int deleteRowById(@Param("id") long id);
+
+    //DELETE/PATCH /movies => the rows about to change, locked until the commit so the bulk statements below change
+    //exactly these (a concurrent write waits instead of slipping in between), the old values feed the invalidation
+    //a null filter field means "no restriction", as in the listings
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT " + DTO_COLUMNS + " FROM Movie m WHERE m.id IN :ids"
+            + " AND (:director IS NULL OR m.director = :director)"
+            + " AND (:fromYear IS NULL OR m.year >= :fromYear)"
+            + " AND (:toYear IS NULL OR m.year <= :toYear)")
+    List<MovieDTO> lockByIds(@Param("ids") Collection<Long> ids,
+                             @Param("director") String director,
+                             @Param("fromYear") Integer fromYear,
+                             @Param("toYear") Integer toYear);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT " + DTO_COLUMNS + " FROM Movie m WHERE"
+            + " (:director IS NULL OR m.director = :director)"
+            + " AND (:fromYear IS NULL OR m.year >= :fromYear)"
+            + " AND (:toYear IS NULL OR m.year <= :toYear)")
+    List<MovieDTO> lockByFilter(@Param("director") String director,
+                                @Param("fromYear") Integer fromYear,
+                                @Param("toYear") Integer toYear,
+                                Pageable limit);
+
+    //set-based => one statement for the whole id list, nothing is loaded into the persistence context
+    //run inside the caller's transaction, after lockBy*
+    @Modifying
+    @Query("DELETE FROM Movie m WHERE m.id IN :ids")
+    int deleteRowsByIds(@Param("ids") Collection<Long> ids);
+
+    //null => column kept, version and updated_at maintained by hand (a bulk update bypasses @Version/@UpdateTimestamp)
+    //=> ETags of the changed movies move on, an If-Match on an old one fails as after a PUT
+    @Modifying
+    @Query("UPDATE Movie m SET m.title = COALESCE(:title, m.title), m.director = COALESCE(:director, m.director),"
+            + " m.year = COALESCE(:year, m.year), m.version = m.version + 1, m.updatedAt = :now WHERE m.id IN :ids")
+    int updateRowsByIds(@Param("ids") Collection<Long> ids,
+                        @Param("title") String title,
+                        @Param("director") String director,
+                        @Param("year") Integer year,
+                        @Param("now") Instant now);
+
+    //reconciliation of MovieCounts
+    @Query("SELECT new com.example.movieapi.dto.YearCount(m.year, COUNT(m)) FROM Movie m GROUP BY m.year")
+    List<YearCount> countPerYear();
+
+    @Query("SELECT new com.example.movieapi.dto.DirectorCount(m.director, COUNT(m)) FROM Movie m"
+            + " WHERE m.director IS NOT NULL GROUP BY m.director")
+    List<DirectorCount> countPerDirector();
+
+    //duplicate detection of the bulk import => one query per chunk
+    List<Movie> findByTitleIn(Collection<String> titles);
+
+    //keyset pagination => "WHERE id > cursor ORDER BY id" walks the primary key index,
+    //a List return type (instead of Page) avoids the extra COUNT(*) query, the Pageable only carries the LIMIT
+    //constructor expression => rows become MovieDTOs directly, no managed entity, no dirty-checking snapshot
+    @Query("SELECT " + DTO_COLUMNS + " FROM Movie m WHERE m.id > :after"
+            + " AND (:director IS NULL OR m.director = :director)"
+            + " AND (:fromYear IS NULL OR m.year >= :fromYear)"
+            + " AND (:toYear IS NULL OR m.year <= :toYear)"
+            + " ORDER BY m.id ASC")
+    List<MovieDTO> findPageAfter(@Param("after") long after,
+                              @Param("director") String director,
+                              @Param("fromYear") Integer fromYear,
+                              @Param("toYear") Integer toYear,
+                              Pageable limit);
+
+    //same as above walking backwards, used by the "prev" links => rows come back in descending order
+    @Query("SELECT " + DTO_COLUMNS + " FROM Movie m WHERE m.id < :before"
+            + " AND (:director IS NULL OR m.director = :director)"
+            + " AND (:fromYear IS NULL OR m.year >= :fromYear)"
+            + " AND (:toYear IS NULL OR m.year <= :toYear)"
+            + " ORDER BY m.id DESC")
+    List<MovieDTO> findPageBefore(@Param("before") long before,
+                               @Param("director") String director,
+                               @Param("fromYear") Integer fromYear,
+                               @Param("toYear") Integer toYear,
+                               Pageable limit);
+
+    //whole catalog as a cursor => rows are pulled from the driver in batches of the fetch size,
+    //must be consumed inside a transaction and closed afterwards
+    @QueryHints({@QueryHint(name = HINT_FETCH_SIZE, value = "500"), @QueryHint(name = HINT_READ_ONLY, value = "true")})
+    @Query("SELECT m FROM Movie m ORDER BY m.id ASC")
+    Stream<Movie> streamAll();
+
+    //"LIKE '%q%'" equivalent of GET /movies/search, only kept as the baseline of MovieSearchBenchmark
+    List<Movie> findByTitleContainingIgnoreCaseOrDirectorContainingIgnoreCase(String title, String director, Pageable limit);
 }
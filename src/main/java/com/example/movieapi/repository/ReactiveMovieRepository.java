@@ -0,0 +1,126 @@
+package com.example.movieapi.repository;
+
+import com.example.movieapi.dto.MovieDTO;
+import com.example.movieapi.dto.MovieFilter;
+import com.example.movieapi.model.Movie;
+import io.r2dbc.spi.Closeable;
+import io.r2dbc.spi.ConnectionFactories;
+import io.r2dbc.spi.ConnectionFactory;
+import io.r2dbc.spi.ConnectionFactoryOptions;
+import io.r2dbc.spi.Readable;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+//R2DBC counterpart of MovieRepository for the "reactive" profile
+//plain sql through DatabaseClient => same table, same quoted "year" column as schema.sql, no second entity mapping
+@Repository
+@Profile("reactive")
+public class ReactiveMovieRepository {
+
+    private static final String COLUMNS = "SELECT id, title, director, \"year\" FROM movies";
+
+    private final ConnectionFactory connectionFactory;
+    private final DatabaseClient databaseClient;
+
+    //the pool is not a bean on purpose => boot keeps auto-configuring the jdbc DataSource used by jpa and schema.sql
+    //same credentials as the jdbc side
+    public ReactiveMovieRepository(@Value("${movieapi.r2dbc.url}") String url,
+                                   @Value("${spring.datasource.username}") String username,
+                                   @Value("${spring.datasource.password}") String password) {
+        this.connectionFactory = ConnectionFactories.get(ConnectionFactoryOptions.parse(url).mutate()
+                .option(ConnectionFactoryOptions.USER, username)
+                .option(ConnectionFactoryOptions.PASSWORD, password)
+                .build());
+        this.databaseClient = DatabaseClient.create(connectionFactory);
+    }
+
+    @PreDestroy
+    public void close() {
+        if (connectionFactory instanceof Closeable closeable) {
+            Mono.from(closeable.close()).block();
+        }
+    }
+
+    public Mono<Long> count() {
+        return databaseClient.sql("SELECT COUNT(*) FROM movies")
+                .map(row -> row.get(0, Long.class))
+                .one();
+    }
+
+    public Mono<MovieDTO> findById(long id) {
+        return databaseClient.sql(COLUMNS + " WHERE id = :id")
+                .bind("id", id)
+                .map(ReactiveMovieRepository::toDto)
+                .one();
+    }
+
+    //same keyset walk as MovieRepository.findPageAfter, rows are emitted as the subscriber requests them
+    public Flux<MovieDTO> findPageAfter(long after, MovieFilter filter, int limit) {
+        StringBuilder sql = new StringBuilder(COLUMNS).append(" WHERE id > :after");
+        if (filter.getDirector() != null) {
+            sql.append(" AND director = :director");
+        }
+        if (filter.lowerYear() != null) {
+            sql.append(" AND \"year\" >= :fromYear");
+        }
+        if (filter.upperYear() != null) {
+            sql.append(" AND \"year\" <= :toYear");
+        }
+        sql.append(" ORDER BY id ASC LIMIT :limit");
+
+        DatabaseClient.GenericExecuteSpec spec = databaseClient.sql(sql.toString())
+                .bind("after", after)
+                .bind("limit", limit);
+        if (filter.getDirector() != null) {
+            spec = spec.bind("director", filter.getDirector());
+        }
+        if (filter.lowerYear() != null) {
+            spec = spec.bind("fromYear", filter.lowerYear());
+        }
+        if (filter.upperYear() != null) {
+            spec = spec.bind("toYear", filter.upperYear());
+        }
+        return spec.map(ReactiveMovieRepository::toDto).all();
+    }
+
+    //id comes from the movies_seq default of the column
+    public Mono<Long> insert(Movie movie) {
+        return databaseClient.sql("INSERT INTO movies (title, director, \"year\") VALUES (:title, :director, :year)")
+                .bind("title", movie.getTitle())
+                .bind("director", movie.getDirector())
+                .bind("year", movie.getYear())
+                .filter(statement -> statement.returnGeneratedValues("id"))
+                .map(row -> row.get("id", Long.class))
+                .one();
+    }
+
+    //number of updated rows => 0 when the id does not exist
+    //version/updated_at are maintained by hibernate on the jpa side => same bump here so ETags stay valid across stacks
+    public Mono<Long> update(long id, Movie movie) {
+        return databaseClient.sql("UPDATE movies SET title = :title, director = :director, \"year\" = :year,"
+                        + " version = version + 1, updated_at = CURRENT_TIMESTAMP WHERE id = :id")
+                .bind("title", movie.getTitle())
+                .bind("director", movie.getDirector())
+                .bind("year", movie.getYear())
+                .bind("id", id)
+                .fetch()
+                .rowsUpdated();
+    }
+
+    public Mono<Long> deleteById(long id) {
+        return databaseClient.sql("DELETE FROM movies WHERE id = :id")
+                .bind("id", id)
+                .fetch()
+                .rowsUpdated();
+    }
+
+    private static MovieDTO toDto(Readable row) {
+        return new MovieDTO(row.get("id", Long.class), row.get("title", String.class),
+                row.get("director", String.class), row.get("year", Integer.class));
+    }
+}
@@ -0,0 +1,61 @@
+package com.example.movieapi.search;
+
+import java.util.Arrays;
+
+//sorted set of movie ids for one token => a plain long[] instead of List<Long>,
+//no boxing and 8 bytes per id; ids mostly arrive in ascending order so add() is usually an append
+final class LongPostings {
+
+    //the token as the sorted map holds it => the movies share this instance instead of keeping their own copies
+    final String token;
+    private long[] ids = new long[2];
+    private int size;
+
+    LongPostings(String token) {
+        this.token = token;
+    }
+
+    void add(long id) {
+        if (size == 0 || ids[size - 1] < id) {
+            ensureCapacity();
+            ids[size++] = id;
+            return;
+        }
+        int position = Arrays.binarySearch(ids, 0, size, id);
+        if (position >= 0) {
+            return;
+        }
+        int insertAt = -position - 1;
+        ensureCapacity();
+        System.arraycopy(ids, insertAt, ids, insertAt + 1, size - insertAt);
+        ids[insertAt] = id;
+        size++;
+    }
+
+    void remove(long id) {
+        int position = Arrays.binarySearch(ids, 0, size, id);
+        if (position < 0) {
+            return;
+        }
+        System.arraycopy(ids, position + 1, ids, position, size - position - 1);
+        size--;
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    long get(int index) {
+        return ids[index];
+    }
+
+    private void ensureCapacity() {
+        if (size == ids.length) {
+            ids = Arrays.copyOf(ids, ids.length * 2);
+        }
+    }
+}
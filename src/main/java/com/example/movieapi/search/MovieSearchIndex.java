@@ -0,0 +1,352 @@
+package com.example.movieapi.search;
+
+import com.example.movieapi.dto.MovieDTO;
+import org.springframework.stereotype.Component;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Pattern;
+
+//in-memory inverted index of titles and directors => GET /movies/search never touches the db
+//tokens live in sorted maps so a prefix is a range scan, each token points to a sorted long[] of movie ids.
+//a hit has to match every word of the query (the last one typically being a prefix while the user types)
+//only the word with the fewest postings is read from the index (every token it is a prefix of, merged as they
+//are walked), the other words are checked against the tokens of each of its movies => nothing is copied or
+//intersected up front and a short prefix expanding to many tokens is only walked when it is the most selective
+@Component
+public class MovieSearchIndex {
+
+    //score of one query word, exact word beats prefix and title beats director
+    private static final int TITLE_EXACT = 4;
+    private static final int TITLE_PREFIX = 3;
+    private static final int DIRECTOR_EXACT = 2;
+    private static final int DIRECTOR_PREFIX = 1;
+    //rank key = inverted score above the id => sorting keys ascending gives best score first, then lowest id
+    private static final int ID_BITS = 48;
+    private static final int MAX_QUERY_WORDS = 8;
+    private static final int MAX_SCORE = TITLE_EXACT * MAX_QUERY_WORDS;
+
+    private static final Pattern NON_WORD = Pattern.compile("[^\\p{L}\\p{N}]+");
+    private static final Pattern DIACRITICS = Pattern.compile("\\p{M}+");
+
+    //reads vastly outnumber writes => many concurrent searches, writers take the exclusive lock briefly
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final NavigableMap<String, LongPostings> titleTokens = new TreeMap<>();
+    private final NavigableMap<String, LongPostings> directorTokens = new TreeMap<>();
+    private final Map<Long, IndexedMovie> movies = new HashMap<>();
+    //ids deleted while a rebuild streams the table => the stream must not bring them back (guarded by lock)
+    private Set<Long> removedDuringRebuild;
+
+    //tokens are the instances held by the token maps
+    private record IndexedMovie(long id, String title, String director, int year,
+                                String[] titleTokens, String[] directorTokens) {}
+
+    //walks the posting list of one token, score = what a match on this token is worth
+    private static final class Cursor {
+        private final LongPostings postings;
+        private final int score;
+        private int position;
+
+        private Cursor(LongPostings postings, int score) {
+            this.postings = postings;
+            this.score = score;
+        }
+
+        private long id() {
+            return postings.get(position);
+        }
+
+        private boolean advance() {
+            return ++position < postings.size();
+        }
+    }
+
+    //add or replace one movie, called by the write paths once their transaction is done
+    public void put(long id, String title, String director, int year) {
+        lock.writeLock().lock();
+        try {
+            removeLocked(id);
+            addLocked(id, title, director, year);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(long id) {
+        lock.writeLock().lock();
+        try {
+            removeLocked(id);
+            if (removedDuringRebuild != null) {
+                removedDuringRebuild.add(id);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    //rebuild = beginRebuild(), load() for every row of the table, endRebuild()
+    //rows written concurrently through put()/remove() are newer than what the stream read => load() never overrides them
+    public void beginRebuild() {
+        lock.writeLock().lock();
+        try {
+            removedDuringRebuild = new HashSet<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void load(long id, String title, String director, int year) {
+        lock.writeLock().lock();
+        try {
+            if (!movies.containsKey(id) && (removedDuringRebuild == null || !removedDuringRebuild.contains(id))) {
+                addLocked(id, title, director, year);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void endRebuild() {
+        lock.writeLock().lock();
+        try {
+            removedDuringRebuild = null;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return movies.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    //ranked hits offset..offset+limit over every match, best score first then lowest id
+    public SearchResult search(String query, int limit, int offset) {
+        String[] words = tokenize(query);
+        if (words.length == 0) {
+            return new SearchResult(List.of(), 0);
+        }
+        if (words.length > MAX_QUERY_WORDS) {
+            words = Arrays.copyOf(words, MAX_QUERY_WORDS);
+        }
+
+        lock.readLock().lock();
+        try {
+            int driver = 0;
+            long driverPostings = Long.MAX_VALUE;
+            for (int w = 0; w < words.length; w++) {
+                long postings = postings(words[w]);
+                if (postings == 0) {
+                    return new SearchResult(List.of(), 0);
+                }
+                if (postings < driverPostings) {
+                    driver = w;
+                    driverPostings = postings;
+                }
+            }
+
+            //the driver's tokens merged by id => every candidate once, with the best score it has for that word
+            PriorityQueue<Cursor> cursors = new PriorityQueue<>(Comparator.comparingLong(Cursor::id));
+            cursors(titleTokens, words[driver], TITLE_EXACT, TITLE_PREFIX, cursors);
+            cursors(directorTokens, words[driver], DIRECTOR_EXACT, DIRECTOR_PREFIX, cursors);
+
+            //bounded max-heap of rank keys => the k best in O(n log k), no sort of every match
+            long[] heap = new long[(int) Math.min(offset + limit, driverPostings)];
+            int size = 0;
+            int count = 0;
+            while (!cursors.isEmpty()) {
+                Cursor cursor = cursors.poll();
+                long id = cursor.id();
+                int score = cursor.score;
+                next(cursor, cursors);
+                while (!cursors.isEmpty() && cursors.peek().id() == id) {
+                    Cursor same = cursors.poll();
+                    score = Math.max(score, same.score);
+                    next(same, cursors);
+                }
+
+                IndexedMovie movie = movies.get(id);
+                for (int w = 0; w < words.length && score > 0; w++) {
+                    if (w != driver) {
+                        int wordScore = score(movie, words[w]);
+                        score = wordScore == 0 ? 0 : score + wordScore;
+                    }
+                }
+                if (score == 0) {
+                    continue;
+                }
+                count++;
+                long key = ((long) (MAX_SCORE - score) << ID_BITS) | id;
+                if (size < heap.length) {
+                    heap[size] = key;
+                    siftUp(heap, size++);
+                } else if (heap.length > 0 && key < heap[0]) {
+                    heap[0] = key;
+                    siftDown(heap, size);
+                }
+            }
+
+            Arrays.sort(heap, 0, size);
+            List<MovieDTO> page = new ArrayList<>(Math.max(0, Math.min(limit, size - offset)));
+            for (int i = offset; i < size; i++) {
+                IndexedMovie movie = movies.get(heap[i] & ((1L << ID_BITS) - 1));
+                page.add(new MovieDTO(movie.id(), movie.title(), movie.director(), movie.year()));
+            }
+            return new SearchResult(page, count);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    //postings over every token the word is a prefix of, in titles and directors => how selective it is
+    private long postings(String word) {
+        long postings = 0;
+        for (LongPostings tokenPostings : prefixRange(titleTokens, word).values()) {
+            postings += tokenPostings.size();
+        }
+        for (LongPostings tokenPostings : prefixRange(directorTokens, word).values()) {
+            postings += tokenPostings.size();
+        }
+        return postings;
+    }
+
+    private static void cursors(NavigableMap<String, LongPostings> tokens, String word, int exactScore, int prefixScore,
+                                PriorityQueue<Cursor> cursors) {
+        for (LongPostings postings : prefixRange(tokens, word).values()) {
+            cursors.add(new Cursor(postings, postings.token.length() == word.length() ? exactScore : prefixScore));
+        }
+    }
+
+    private static NavigableMap<String, LongPostings> prefixRange(NavigableMap<String, LongPostings> tokens, String word) {
+        return tokens.subMap(word, true, word + Character.MAX_VALUE, false);
+    }
+
+    private static void next(Cursor cursor, PriorityQueue<Cursor> cursors) {
+        if (cursor.advance()) {
+            cursors.add(cursor);
+        }
+    }
+
+    //what one word is worth for a movie, 0 => no match
+    private static int score(IndexedMovie movie, String word) {
+        int score = 0;
+        for (String token : movie.titleTokens()) {
+            if (token.equals(word)) {
+                return TITLE_EXACT;
+            }
+            if (token.startsWith(word)) {
+                score = TITLE_PREFIX;
+            }
+        }
+        if (score > 0) {
+            return score;
+        }
+        for (String token : movie.directorTokens()) {
+            if (token.equals(word)) {
+                return DIRECTOR_EXACT;
+            }
+            if (token.startsWith(word)) {
+                score = DIRECTOR_PREFIX;
+            }
+        }
+        return score;
+    }
+
+    private static void siftUp(long[] heap, int index) {
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            if (heap[parent] >= heap[index]) {
+                return;
+            }
+            swap(heap, parent, index);
+            index = parent;
+        }
+    }
+
+    private static void siftDown(long[] heap, int size) {
+        int index = 0;
+        while (true) {
+            int left = 2 * index + 1;
+            if (left >= size) {
+                return;
+            }
+            int largest = left + 1 < size && heap[left + 1] > heap[left] ? left + 1 : left;
+            if (heap[index] >= heap[largest]) {
+                return;
+            }
+            swap(heap, index, largest);
+            index = largest;
+        }
+    }
+
+    private static void swap(long[] heap, int a, int b) {
+        long tmp = heap[a];
+        heap[a] = heap[b];
+        heap[b] = tmp;
+    }
+
+    private void addLocked(long id, String title, String director, int year) {
+        movies.put(id, new IndexedMovie(id, title, director, year,
+                addTokens(titleTokens, tokenize(title), id), addTokens(directorTokens, tokenize(director), id)));
+    }
+
+    //words replaced by the map's own token instances
+    private static String[] addTokens(NavigableMap<String, LongPostings> tokens, String[] words, long id) {
+        for (int i = 0; i < words.length; i++) {
+            LongPostings postings = tokens.computeIfAbsent(words[i], LongPostings::new);
+            postings.add(id);
+            words[i] = postings.token;
+        }
+        return words;
+    }
+
+    private void removeLocked(long id) {
+        IndexedMovie movie = movies.remove(id);
+        if (movie == null) {
+            return;
+        }
+        removeTokens(titleTokens, movie.titleTokens(), id);
+        removeTokens(directorTokens, movie.directorTokens(), id);
+    }
+
+    private static void removeTokens(NavigableMap<String, LongPostings> tokens, String[] words, long id) {
+        for (String word : words) {
+            LongPostings postings = tokens.get(word);
+            if (postings != null) {
+                postings.remove(id);
+                if (postings.isEmpty()) {
+                    tokens.remove(word);
+                }
+            }
+        }
+    }
+
+    //lower case words without accents => "Amélie" and "amelie" are the same token
+    static String[] tokenize(String text) {
+        if (text == null || text.isBlank()) {
+            return new String[0];
+        }
+        String normalized = DIACRITICS.matcher(Normalizer.normalize(text, Normalizer.Form.NFD)).replaceAll("");
+        return Arrays.stream(NON_WORD.split(normalized.toLowerCase(Locale.ROOT)))
+                .filter(word -> !word.isEmpty())
+                .distinct()
+                .toArray(String[]::new);
+    }
+}
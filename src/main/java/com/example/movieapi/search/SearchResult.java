@@ -0,0 +1,24 @@
+package com.example.movieapi.search;
+
+import com.example.movieapi.dto.MovieDTO;
+
+import java.util.List;
+
+//one page of ranked search hits => total is the number of matches over all pages
+public class SearchResult {
+    private final List<MovieDTO> movies;
+    private final int total;
+
+    public SearchResult(List<MovieDTO> movies, int total) {
+        this.movies = movies;
+        this.total = total;
+    }
+
+    public List<MovieDTO> getMovies() {
+        return movies;
+    }
+
+    public int getTotal() {
+        return total;
+    }
+}
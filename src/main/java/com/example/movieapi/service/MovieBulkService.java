@@ -0,0 +1,184 @@
+package com.example.movieapi.service;
+
+import com.example.movieapi.cache.CatalogVersion;
+import com.example.movieapi.changes.MovieChangeLog;
+import com.example.movieapi.dto.MovieDTO;
+import com.example.movieapi.dto.MovieFilter;
+import com.example.movieapi.dto.MoviePatch;
+import com.example.movieapi.model.MovieChange;
+import com.example.movieapi.repository.DatabaseConcurrencyLimiter;
+import com.example.movieapi.repository.LimitedTransactionTemplate;
+import com.example.movieapi.repository.MovieRepository;
+import com.example.movieapi.search.MovieSearchIndex;
+import com.example.movieapi.stats.MovieCounts;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+
+//DELETE /movies and PATCH /movies => one transaction: the selected rows are locked and read with one query,
+//then changed with one DELETE/UPDATE statement (per chunk of ids) instead of a load + check + write per movie
+//the cache, search index and counts are adjusted after the commit from the rows read under the lock
+//at most max-rows movies per call (ids or filter) => one call never locks, holds in memory and rewrites the whole catalog,
+//a wider selection is refused with a 400 and done in several calls (by ids, narrower filters)
+@Service
+public class MovieBulkService {
+
+    //ids per IN list => keeps the statements (and their padded parameter lists) a reasonable size
+    static final int IN_CHUNK = 1000;
+
+    private final MovieRepository movieRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final Cache movieCache;
+    private final MovieSearchIndex movieSearchIndex;
+    private final MovieCounts movieCounts;
+    private final CatalogVersion catalogVersion;
+    private final MovieChangeLog movieChangeLog;
+    private final int maxRows;
+
+    public MovieBulkService(MovieRepository movieRepository, PlatformTransactionManager transactionManager,
+                            CacheManager cacheManager, MovieSearchIndex movieSearchIndex, MovieCounts movieCounts,
+                            CatalogVersion catalogVersion, MovieChangeLog movieChangeLog,
+                            DatabaseConcurrencyLimiter databaseConcurrencyLimiter,
+                            @Value("${movieapi.bulk.max-rows}") int maxRows) {
+        this.movieRepository = movieRepository;
+        this.transactionTemplate = new LimitedTransactionTemplate(transactionManager, databaseConcurrencyLimiter);
+        this.movieCache = cacheManager.getCache(MovieService.MOVIE_CACHE);
+        this.movieSearchIndex = movieSearchIndex;
+        this.movieCounts = movieCounts;
+        this.catalogVersion = catalogVersion;
+        this.movieChangeLog = movieChangeLog;
+        this.maxRows = maxRows;
+    }
+
+    //ids and filter combine (both must match), returns the number of deleted movies
+    public int deleteMovies(List<Long> ids, MovieFilter filter) {
+        checkSelection(ids, filter);
+        List<MovieDTO> deleted = transactionTemplate.execute(status -> {
+            List<MovieDTO> rows = lock(ids, filter);
+            List<MovieChange> changes = new ArrayList<>(rows.size());
+            for (List<Long> chunk : chunks(idsOf(rows))) {
+                movieRepository.deleteRowsByIds(chunk);
+            }
+            for (MovieDTO movie : rows) {
+                changes.add(MovieChange.deleted(movie.getId()));
+                //applied once the transaction committed
+                movieCounts.removed(movie.getDirector(), movie.getYear());
+            }
+            movieChangeLog.record(changes);
+            return rows;
+        });
+
+        for (MovieDTO movie : deleted) {
+            movieCache.evict(movie.getId());
+            movieSearchIndex.remove(movie.getId());
+        }
+        if (!deleted.isEmpty()) {
+            catalogVersion.bump();
+        }
+        return deleted.size();
+    }
+
+    //the patch is applied to every selected movie, a result clashing with another movie fails the whole call (409)
+    public int updateMovies(List<Long> ids, MovieFilter filter, MoviePatch patch) {
+        checkSelection(ids, filter);
+        if (!patch.isValid()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "At least one of title, director, year is required, texts must not be blank and year >= 1900");
+        }
+        Instant now = Instant.now();
+        List<MovieDTO> updated = transactionTemplate.execute(status -> {
+            List<MovieDTO> rows = lock(ids, filter);
+            for (List<Long> chunk : chunks(idsOf(rows))) {
+                movieRepository.updateRowsByIds(chunk, patch.getTitle(), patch.getDirector(), patch.getYear(), now);
+            }
+            List<MovieChange> changes = new ArrayList<>(rows.size());
+            for (MovieDTO movie : rows) {
+                String director = patch.getDirector() != null ? patch.getDirector() : movie.getDirector();
+                int year = patch.getYear() != null ? patch.getYear() : movie.getYear();
+                changes.add(MovieChange.updated(movie.getId(),
+                        patch.getTitle() != null ? patch.getTitle() : movie.getTitle(), director, year,
+                        movie.getVersion() + 1));
+                movieCounts.changed(movie.getDirector(), movie.getYear(), director, year);
+            }
+            movieChangeLog.record(changes);
+            return rows;
+        });
+
+        for (MovieDTO movie : updated) {
+            String title = patch.getTitle() != null ? patch.getTitle() : movie.getTitle();
+            String director = patch.getDirector() != null ? patch.getDirector() : movie.getDirector();
+            int year = patch.getYear() != null ? patch.getYear() : movie.getYear();
+            movieCache.evict(movie.getId());
+            movieSearchIndex.put(movie.getId(), title, director, year);
+        }
+        if (!updated.isEmpty()) {
+            catalogVersion.bump();
+        }
+        return updated.size();
+    }
+
+    //no ids and no filter would mean the whole catalog => refused rather than guessed
+    //(a filter matching everything, e.g. fromYear=0, is caught by max-rows in lock)
+    private void checkSelection(List<Long> ids, MovieFilter filter) {
+        boolean noIds = ids == null || ids.isEmpty();
+        boolean noFilter = filter.getDirector() == null && filter.lowerYear() == null && filter.upperYear() == null;
+        if (noIds && noFilter) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Select movies by ids, director or year range");
+        }
+        if (!noIds && new HashSet<>(ids).size() > maxRows) {
+            throw tooManyRows();
+        }
+    }
+
+    private List<MovieDTO> lock(List<Long> ids, MovieFilter filter) {
+        if (ids == null || ids.isEmpty()) {
+            //one more than allowed => tells a selection that is too wide without locking all of it
+            List<MovieDTO> rows = movieRepository.lockByFilter(filter.getDirector(), filter.lowerYear(), filter.upperYear(),
+                    PageRequest.of(0, maxRows + 1));
+            if (rows.size() > maxRows) {
+                //rolls the transaction back => the locks taken so far are released
+                throw tooManyRows();
+            }
+            return rows;
+        }
+        List<MovieDTO> rows = new ArrayList<>(ids.size());
+        //an id named twice is still one movie
+        for (List<Long> chunk : chunks(new ArrayList<>(new LinkedHashSet<>(ids)))) {
+            rows.addAll(movieRepository.lockByIds(chunk, filter.getDirector(), filter.lowerYear(), filter.upperYear()));
+        }
+        return rows;
+    }
+
+    private ResponseStatusException tooManyRows() {
+        return new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                "Selection matches more than " + maxRows + " movies, narrow the filter or split the ids over several calls");
+    }
+
+    private static List<Long> idsOf(List<MovieDTO> rows) {
+        List<Long> ids = new ArrayList<>(rows.size());
+        for (MovieDTO row : rows) {
+            ids.add(row.getId());
+        }
+        return ids;
+    }
+
+    private static List<List<Long>> chunks(List<Long> ids) {
+        List<List<Long>> chunks = new ArrayList<>();
+        for (int from = 0; from < ids.size(); from += IN_CHUNK) {
+            chunks.add(ids.subList(from, Math.min(from + IN_CHUNK, ids.size())));
+        }
+        return chunks;
+    }
+}
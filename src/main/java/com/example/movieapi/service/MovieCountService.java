@@ -0,0 +1,116 @@
+package com.example.movieapi.service;
+
+import com.example.movieapi.datasource.DataSourceRoute;
+import com.example.movieapi.dto.DirectorCount;
+import com.example.movieapi.dto.YearCount;
+import com.example.movieapi.repository.DatabaseConcurrencyLimiter;
+import com.example.movieapi.repository.LimitedTransactionTemplate;
+import com.example.movieapi.repository.MovieRepository;
+import com.example.movieapi.stats.MovieCounts;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.SortedMap;
+
+//GET /count, /count/years, /count/directors => served from MovieCounts
+//seeded from the table at startup, then re-read from the table every few minutes so a drift
+//(e.g. rows changed by plain SQL or a write racing with the previous reconciliation) never lasts
+//seeded before the web server starts => no request ever sees counts that hold only the writes since boot,
+//and no write can race with the seed (a reconciliation is skipped when one does)
+@Service
+public class MovieCountService implements SmartLifecycle {
+
+    //started before the web server (its phase is DEFAULT_PHASE - 2048), once every bean is ready
+    private static final int PHASE = SmartLifecycle.DEFAULT_PHASE - 4096;
+
+    private static final Logger logger = LoggerFactory.getLogger(MovieCountService.class);
+
+    private final MovieRepository movieRepository;
+    private final MovieCounts movieCounts;
+    private final DatabaseConcurrencyLimiter databaseConcurrencyLimiter;
+    private final TransactionTemplate readOnlyTransaction;
+    private volatile boolean running;
+
+    public MovieCountService(MovieRepository movieRepository, MovieCounts movieCounts,
+                             PlatformTransactionManager transactionManager, DatabaseConcurrencyLimiter databaseConcurrencyLimiter) {
+        this.movieRepository = movieRepository;
+        this.movieCounts = movieCounts;
+        this.databaseConcurrencyLimiter = databaseConcurrencyLimiter;
+        this.readOnlyTransaction = new LimitedTransactionTemplate(transactionManager, databaseConcurrencyLimiter);
+        this.readOnlyTransaction.setReadOnly(true);
+    }
+
+    @Override
+    public void start() {
+        //not a request => off the request permits
+        if (!databaseConcurrencyLimiter.outsideLimit(this::reconcile)) {
+            //nothing writes before the web server starts => a write got in anyway, the counts can't be trusted
+            throw new IllegalStateException("Movie counts not seeded, a write raced with the count queries");
+        }
+        logger.info("Movie counts seeded with {} movies", movieCounts.total());
+        running = true;
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public int getPhase() {
+        return PHASE;
+    }
+
+    //two GROUP BY scans per run instead of one COUNT(*) scan per request
+    @Scheduled(initialDelayString = "${movieapi.counts.reconcile-interval}",
+            fixedDelayString = "${movieapi.counts.reconcile-interval}")
+    public void scheduledReconcile() {
+        //background => off the request permits
+        databaseConcurrencyLimiter.outsideLimit(this::reconcile);
+    }
+
+    //false => writes were counted while the queries ran, the counts were left as they are
+    //read from the primary => the write counter only tells about writes that already committed there
+    public boolean reconcile() {
+        long writes = movieCounts.writes();
+        boolean reset;
+        try (DataSourceRoute.Pin pin = DataSourceRoute.primary()) {
+            reset = Boolean.TRUE.equals(readOnlyTransaction.execute(status -> {
+                List<YearCount> years = movieRepository.countPerYear();
+                List<DirectorCount> directors = movieRepository.countPerDirector();
+                return movieCounts.reset(writes, years, directors);
+            }));
+        }
+        if (!reset) {
+            logger.debug("Movie count reconciliation skipped, writes happened meanwhile");
+        }
+        return reset;
+    }
+
+    public long getMoviesCount() {
+        return movieCounts.total();
+    }
+
+    public SortedMap<Integer, Long> getCountsPerYear() {
+        return movieCounts.perYear();
+    }
+
+    public SortedMap<String, Long> getCountsPerDirector() {
+        return movieCounts.perDirector();
+    }
+
+    public SortedMap<String, Long> getCountsPerDirector(String after, int limit) {
+        return movieCounts.perDirector(after, limit);
+    }
+}
@@ -0,0 +1,238 @@
+package com.example.movieapi.service;
+
+import com.example.movieapi.cache.CatalogVersion;
+import com.example.movieapi.changes.MovieChangeLog;
+import com.example.movieapi.dto.BulkInsertResult;
+import com.example.movieapi.exceptions.DuplicateMovies;
+import com.example.movieapi.model.Movie;
+import com.example.movieapi.model.MovieChange;
+import com.example.movieapi.repository.DatabaseConcurrencyLimiter;
+import com.example.movieapi.repository.LimitedTransactionTemplate;
+import com.example.movieapi.repository.MovieRepository;
+import com.example.movieapi.search.MovieSearchIndex;
+import com.example.movieapi.stats.MovieCounts;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.RuntimeJsonMappingException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+//POST /movies/bulk => rows are read, checked and written chunk by chunk:
+//one IN query per chunk finds the duplicates, one transaction per chunk writes the rest as jdbc batches
+@Service
+public class MovieImportService {
+
+    private static final Logger logger = LoggerFactory.getLogger(MovieImportService.class);
+
+    //rows per transaction, a multiple of hibernate.jdbc.batch_size
+    static final int CHUNK_SIZE = 500;
+
+    private final MovieRepository movieRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final Cache movieCache;
+    private final MovieSearchIndex movieSearchIndex;
+    private final MovieCounts movieCounts;
+    private final CatalogVersion catalogVersion;
+    private final MovieChangeLog movieChangeLog;
+
+    public MovieImportService(MovieRepository movieRepository, PlatformTransactionManager transactionManager,
+                              CacheManager cacheManager, MovieSearchIndex movieSearchIndex, MovieCounts movieCounts,
+                              CatalogVersion catalogVersion, MovieChangeLog movieChangeLog,
+                              DatabaseConcurrencyLimiter databaseConcurrencyLimiter) {
+        this.movieRepository = movieRepository;
+        this.transactionTemplate = new LimitedTransactionTemplate(transactionManager, databaseConcurrencyLimiter);
+        this.movieCache = cacheManager.getCache(MovieService.MOVIE_CACHE);
+        this.movieSearchIndex = movieSearchIndex;
+        this.movieCounts = movieCounts;
+        this.catalogVersion = catalogVersion;
+        this.movieChangeLog = movieChangeLog;
+    }
+
+    //works the same for a json array and for ndjson, the iterator hides the difference
+    //chunks are committed as they go => a malformed document stops the import but keeps the chunks already written
+    public List<BulkInsertResult> importMovies(MappingIterator<Movie> rows) {
+        List<BulkInsertResult> results = new ArrayList<>();
+        List<Movie> chunk = new ArrayList<>(CHUNK_SIZE);
+        List<Integer> chunkIndexes = new ArrayList<>(CHUNK_SIZE);
+        int index = 0;
+
+        while (hasNext(rows, index)) {
+            try {
+                chunk.add(rows.next());
+                chunkIndexes.add(index);
+            } catch (RuntimeJsonMappingException e) {
+                //well-formed json with a wrong type (e.g. a text year) => only this row is rejected
+                String message = e.getCause() instanceof JsonMappingException cause ? cause.getOriginalMessage() : e.getMessage();
+                results.add(BulkInsertResult.invalid(index, message));
+            } catch (RuntimeException e) {
+                throw malformed(index, e);
+            }
+            index++;
+
+            if (chunk.size() == CHUNK_SIZE) {
+                results.addAll(importChunk(chunk, chunkIndexes, false));
+                chunk.clear();
+                chunkIndexes.clear();
+            }
+        }
+        if (!chunk.isEmpty()) {
+            results.addAll(importChunk(chunk, chunkIndexes, false));
+        }
+        results.sort((a, b) -> Integer.compare(a.getIndex(), b.getIndex()));
+        return results;
+    }
+
+    //one batch of the async ingest queue => same checks and single transaction as a bulk chunk,
+    //one result per movie in the order of the list
+    //an exception means nothing of the batch was written. once the row by row redo started rows are committed
+    //one at a time => a row that cannot be written is a FAILED result, not an exception dropping the others' outcome
+    public List<BulkInsertResult> importBatch(List<Movie> movies) {
+        List<Integer> indexes = new ArrayList<>(movies.size());
+        for (int i = 0; i < movies.size(); i++) {
+            indexes.add(i);
+        }
+        List<BulkInsertResult> results = importChunk(movies, indexes, true);
+        results.sort((a, b) -> Integer.compare(a.getIndex(), b.getIndex()));
+        return results;
+    }
+
+    private boolean hasNext(MappingIterator<Movie> rows, int index) {
+        try {
+            return rows.hasNextValue();
+        } catch (IOException | RuntimeException e) {
+            throw malformed(index, e);
+        }
+    }
+
+    private ResponseStatusException malformed(int index, Exception cause) {
+        return new ResponseStatusException(HttpStatus.BAD_REQUEST, "Malformed JSON at row " + index, cause);
+    }
+
+    private List<BulkInsertResult> importChunk(List<Movie> chunk, List<Integer> indexes, boolean failRows) {
+        List<BulkInsertResult> results = new ArrayList<>(chunk.size());
+        List<Movie> toInsert = new ArrayList<>(chunk.size());
+        List<Integer> toInsertIndexes = new ArrayList<>(chunk.size());
+
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                Set<String> known = existingKeys(chunk);
+                for (int i = 0; i < chunk.size(); i++) {
+                    Movie movie = chunk.get(i);
+                    int index = indexes.get(i);
+                    if (!MovieService.isValid(movie)) {
+                        results.add(BulkInsertResult.invalid(index, "title, director and a year >= 1900 are required"));
+                    } else if (!known.add(key(movie))) {
+                        //already in the db or earlier in this chunk
+                        results.add(BulkInsertResult.conflict(index));
+                    } else {
+                        //ids are always generated, never taken from the request
+                        movie.setId(null);
+                        toInsert.add(movie);
+                        toInsertIndexes.add(index);
+                    }
+                }
+                //new entities => persist(), flushed as jdbc batches
+                movieRepository.saveAll(toInsert);
+                movieRepository.flush();
+                //ids are known once flushed
+                List<MovieChange> changes = new ArrayList<>(toInsert.size());
+                for (Movie movie : toInsert) {
+                    changes.add(MovieChange.inserted(movie));
+                    //applied once the chunk committed
+                    movieCounts.added(movie.getDirector(), movie.getYear());
+                }
+                movieChangeLog.record(changes);
+            });
+        } catch (DataIntegrityViolationException e) {
+            //anything but the movie key (not null, too long, ...) is not a duplicate => a 500, not CONFLICT rows
+            if (!DuplicateMovies.isDuplicateMovie(e)) {
+                throw e;
+            }
+            //a concurrent writer inserted one of the rows after the IN query => the whole batch rolled back,
+            //redo this chunk row by row so only the real duplicates are reported
+            return insertOneByOne(toInsert, toInsertIndexes, results, failRows);
+        }
+
+        for (int i = 0; i < toInsert.size(); i++) {
+            Movie movie = toInsert.get(i);
+            Long id = movie.getId();
+            //the new id may have been cached as a miss before
+            movieCache.evict(id);
+            movieSearchIndex.put(id, movie.getTitle(), movie.getDirector(), movie.getYear());
+            results.add(BulkInsertResult.accepted(toInsertIndexes.get(i), id));
+        }
+        //once per committed chunk
+        if (!toInsert.isEmpty()) {
+            catalogVersion.bump();
+        }
+        return results;
+    }
+
+    private List<BulkInsertResult> insertOneByOne(List<Movie> movies, List<Integer> indexes, List<BulkInsertResult> results,
+                                                  boolean failRows) {
+        for (int i = 0; i < movies.size(); i++) {
+            Movie movie = movies.get(i);
+            //the rolled back batch already handed out an id
+            movie.setId(null);
+            try {
+                transactionTemplate.executeWithoutResult(status -> {
+                    movieRepository.saveAndFlush(movie);
+                    movieChangeLog.record(MovieChange.inserted(movie));
+                    movieCounts.added(movie.getDirector(), movie.getYear());
+                });
+                movieCache.evict(movie.getId());
+                movieSearchIndex.put(movie.getId(), movie.getTitle(), movie.getDirector(), movie.getYear());
+                catalogVersion.bump();
+                results.add(BulkInsertResult.accepted(indexes.get(i), movie.getId()));
+            } catch (RuntimeException e) {
+                if (e instanceof DataIntegrityViolationException violation && DuplicateMovies.isDuplicateMovie(violation)) {
+                    results.add(BulkInsertResult.conflict(indexes.get(i)));
+                    continue;
+                }
+                //the rows before this one are committed => bulk: a 500 after them, ingest: only this row failed
+                if (!failRows) {
+                    throw e;
+                }
+                logger.error("Ingest row {} could not be written", indexes.get(i), e);
+                results.add(BulkInsertResult.failed(indexes.get(i), "Could not be written, retry"));
+            }
+        }
+        return results;
+    }
+
+    //single "title IN (...)" query for the whole chunk, the exact match is done here
+    private Set<String> existingKeys(List<Movie> chunk) {
+        Set<String> titles = new HashSet<>();
+        for (Movie movie : chunk) {
+            if (movie.getTitle() != null) {
+                titles.add(movie.getTitle());
+            }
+        }
+        Set<String> keys = new HashSet<>();
+        if (titles.isEmpty()) {
+            return keys;
+        }
+        for (Movie existing : movieRepository.findByTitleIn(titles)) {
+            keys.add(key(existing));
+        }
+        return keys;
+    }
+
+    private static String key(Movie movie) {
+        return movie.getTitle() + '\u0000' + movie.getDirector() + '\u0000' + movie.getYear();
+    }
+}
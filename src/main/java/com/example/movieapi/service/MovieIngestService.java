@@ -0,0 +1,264 @@
+package com.example.movieapi.service;
+
+import com.example.movieapi.dto.BulkInsertResult;
+import com.example.movieapi.dto.IngestStatus;
+import com.example.movieapi.exceptions.IngestQueueFullException;
+import com.example.movieapi.model.Movie;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+//write-behind mode of POST /add ("Prefer: respond-async") => the request is validated and queued, one writer
+//thread drains the queue in batches, each batch is one transaction (MovieImportService.importBatch)
+//durability: a 202 only means "queued in memory". the movie is in the db once its ticket says COMMITTED,
+//a crash loses what is still queued, a graceful shutdown stops accepting and commits everything queued first
+@Service
+public class MovieIngestService implements SmartLifecycle {
+
+    private static final Logger logger = LoggerFactory.getLogger(MovieIngestService.class);
+
+    //stopped after the web server (no more requests can come in), before the datasource is closed
+    private static final int PHASE = SmartLifecycle.DEFAULT_PHASE - 4096;
+    //idle writer re-checks the queue this often even without a wake-up
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private final MovieImportService movieImportService;
+    private final int capacity;
+    private final int batchSize;
+    private final long lingerNanos;
+
+    //lock-free on both ends, bounded by the reservation counter below
+    private final ConcurrentLinkedQueue<Ticket> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger queued = new AtomicInteger();
+    //tickets not written yet => never expire or get evicted however far the writer lags,
+    //bounded by capacity (a slot is reserved before the put) plus the batch being written
+    private final Map<UUID, IngestStatus> pending = new ConcurrentHashMap<>();
+    //outcome of finished tickets => GET /ingest/{ticket}, until it expires or is evicted beyond max-statuses
+    //only the status => a finished ticket's movie is not kept for the whole retention
+    private final Cache<UUID, IngestStatus> tickets;
+
+    private volatile boolean accepting = true;
+    private volatile boolean running;
+    private volatile Thread writer;
+
+    private final Counter accepted;
+    private final Counter rejected;
+    private final Counter committed;
+    private final Counter conflicts;
+    private final Counter failed;
+    private final Timer batchTimer;
+    private final DistributionSummary batchSizes;
+    private final Timer latency;
+
+    //one queued movie, referenced by the queue and the writer's batch only
+    //random ids => not guessable, unique across restarts and instances
+    private record Ticket(UUID id, Movie movie, long queuedAt) {}
+
+    public MovieIngestService(MovieImportService movieImportService, MeterRegistry registry,
+                              @Value("${movieapi.ingest.capacity}") int capacity,
+                              @Value("${movieapi.ingest.batch-size}") int batchSize,
+                              @Value("${movieapi.ingest.linger}") Duration linger,
+                              @Value("${movieapi.ingest.status-retention}") Duration statusRetention,
+                              @Value("${movieapi.ingest.max-statuses}") long maxStatuses) {
+        this.movieImportService = movieImportService;
+        this.capacity = capacity;
+        this.batchSize = batchSize;
+        this.lingerNanos = linger.toNanos();
+        this.tickets = Caffeine.newBuilder().expireAfterWrite(statusRetention).maximumSize(maxStatuses).build();
+
+        //rate(committed) is the ingest throughput, queue size against capacity shows how close 429s are
+        Gauge.builder("movies.ingest.queue.size", queued, AtomicInteger::get).register(registry);
+        Gauge.builder("movies.ingest.queue.capacity", () -> capacity).register(registry);
+        this.accepted = registry.counter("movies.ingest", "result", "accepted");
+        this.rejected = registry.counter("movies.ingest", "result", "queue_full");
+        this.committed = registry.counter("movies.ingest", "result", "committed");
+        this.conflicts = registry.counter("movies.ingest", "result", "conflict");
+        this.failed = registry.counter("movies.ingest", "result", "failed");
+        this.batchTimer = Timer.builder("movies.ingest.batch").publishPercentileHistogram().register(registry);
+        this.batchSizes = DistributionSummary.builder("movies.ingest.batch.size").register(registry);
+        //queued => committed or rejected, what the feed waits for its status
+        this.latency = Timer.builder("movies.ingest.latency").publishPercentileHistogram().register(registry);
+    }
+
+    //validated by the caller, 429 when the queue is full, 503 once shutdown began
+    public IngestStatus submit(Movie movie) {
+        if (!accepting) {
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Shutting down, ingest is closed");
+        }
+        //reserve a slot first => the queue never holds more than capacity, without a lock
+        if (queued.incrementAndGet() > capacity) {
+            queued.decrementAndGet();
+            rejected.increment();
+            throw new IngestQueueFullException(capacity);
+        }
+        //ids are always generated, never taken from the request
+        movie.setId(null);
+        Ticket ticket = new Ticket(UUID.randomUUID(), movie, System.nanoTime());
+        IngestStatus status = new IngestStatus(ticket.id(), IngestStatus.Status.QUEUED, null, null);
+        pending.put(ticket.id(), status);
+        queue.offer(ticket);
+        accepted.increment();
+        LockSupport.unpark(writer);
+        return status;
+    }
+
+    public Optional<IngestStatus> getStatus(UUID ticket) {
+        //finished ones first => a ticket finishing between the two lookups is still found
+        IngestStatus finished = tickets.getIfPresent(ticket);
+        return Optional.ofNullable(finished != null ? finished : pending.get(ticket));
+    }
+
+    @Override
+    public void start() {
+        accepting = true;
+        running = true;
+        writer = Thread.ofPlatform().name("movie-ingest").daemon().start(this::writeLoop);
+    }
+
+    //closes the door, then waits for the writer to commit what is already queued
+    @Override
+    public void stop() {
+        accepting = false;
+        running = false;
+        Thread thread = writer;
+        if (thread == null) {
+            return;
+        }
+        LockSupport.unpark(thread);
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        writer = null;
+    }
+
+    @Override
+    public boolean isRunning() {
+        return writer != null;
+    }
+
+    @Override
+    public int getPhase() {
+        return PHASE;
+    }
+
+    private void writeLoop() {
+        List<Ticket> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            collect(batch);
+            if (batch.isEmpty()) {
+                LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+                continue;
+            }
+            try {
+                commit(batch);
+            } catch (Throwable e) {
+                //whatever escaped (an Error too) => the batch fails, the writer keeps going for the next ones
+                logger.error("Ingest batch of {} movies failed", batch.size(), e);
+                fail(batch);
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    //whatever is queued, and while the batch is not full yet up to "linger" for more
+    //=> a burst becomes a few big transactions, a lone request waits at most the linger time
+    private void collect(List<Ticket> batch) {
+        long deadline = 0;
+        while (batch.size() < batchSize) {
+            Ticket ticket = queue.poll();
+            if (ticket != null) {
+                queued.decrementAndGet();
+                batch.add(ticket);
+                continue;
+            }
+            if (batch.isEmpty() || !running) {
+                return;
+            }
+            if (deadline == 0) {
+                deadline = System.nanoTime() + lingerNanos;
+            }
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                return;
+            }
+            LockSupport.parkNanos(this, remaining);
+        }
+    }
+
+    private void commit(List<Ticket> batch) {
+        List<Movie> movies = new ArrayList<>(batch.size());
+        for (Ticket ticket : batch) {
+            movies.add(ticket.movie());
+        }
+        List<BulkInsertResult> results;
+        Timer.Sample sample = Timer.start();
+        try {
+            results = movieImportService.importBatch(movies);
+        } finally {
+            sample.stop(batchTimer);
+            batchSizes.record(batch.size());
+        }
+
+        for (BulkInsertResult result : results) {
+            Ticket ticket = batch.get(result.getIndex());
+            switch (result.getStatus()) {
+                case ACCEPTED -> {
+                    finish(ticket, new IngestStatus(ticket.id(), IngestStatus.Status.COMMITTED, result.getId(), null));
+                    committed.increment();
+                }
+                case CONFLICT -> {
+                    finish(ticket, new IngestStatus(ticket.id(), IngestStatus.Status.CONFLICT, null, result.getMessage()));
+                    conflicts.increment();
+                }
+                case INVALID, FAILED -> {
+                    finish(ticket, new IngestStatus(ticket.id(), IngestStatus.Status.FAILED, null, result.getMessage()));
+                    failed.increment();
+                }
+            }
+        }
+    }
+
+    //db unavailable or busy => importBatch wrote nothing of the batch, the feed may send it again
+    //only tickets still pending => one finished before the failure keeps its outcome
+    private void fail(List<Ticket> batch) {
+        for (Ticket ticket : batch) {
+            if (pending.containsKey(ticket.id())) {
+                finish(ticket, new IngestStatus(ticket.id(), IngestStatus.Status.FAILED, null, "Could not be written, retry"));
+                failed.increment();
+            }
+        }
+    }
+
+    private void finish(Ticket ticket, IngestStatus status) {
+        //put before the remove => the ticket is never unknown in between, the retention counts from the outcome
+        tickets.put(ticket.id(), status);
+        pending.remove(ticket.id());
+        latency.record(System.nanoTime() - ticket.queuedAt(), TimeUnit.NANOSECONDS);
+    }
+}
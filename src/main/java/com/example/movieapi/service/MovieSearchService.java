@@ -0,0 +1,60 @@
+package com.example.movieapi.service;
+
+import com.example.movieapi.datasource.DataSourceRoute;
+import com.example.movieapi.search.MovieSearchIndex;
+import com.example.movieapi.search.SearchResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+
+//GET /movies/search => served from MovieSearchIndex, filled once from the table at startup
+//and then kept current by the write methods of MovieService and MovieImportService
+@Service
+public class MovieSearchService {
+
+    //deepest hit a client can page to, bounds the ranking work of one query
+    public static final int MAX_SEARCH_WINDOW = 10_000;
+
+    private static final Logger logger = LoggerFactory.getLogger(MovieSearchService.class);
+
+    private final MovieService movieService;
+    private final MovieSearchIndex movieSearchIndex;
+
+    public MovieSearchService(MovieService movieService, MovieSearchIndex movieSearchIndex) {
+        this.movieService = movieService;
+        this.movieSearchIndex = movieSearchIndex;
+    }
+
+    //streams the whole table once, the writes that happen meanwhile go straight to the index
+    //from the primary => a write the replica has not seen yet would otherwise be overwritten by its old row
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuildIndex() {
+        long start = System.nanoTime();
+        movieSearchIndex.beginRebuild();
+        try (DataSourceRoute.Pin pin = DataSourceRoute.primary()) {
+            movieService.streamAllMovies(movie ->
+                    movieSearchIndex.load(movie.getId(), movie.getTitle(), movie.getDirector(), movie.getYear()));
+        } finally {
+            movieSearchIndex.endRebuild();
+        }
+        logger.info("Search index built with {} movies in {} ms", movieSearchIndex.size(),
+                (System.nanoTime() - start) / 1_000_000);
+    }
+
+    public SearchResult search(String query, int limit, int offset) {
+        if (query == null || query.isBlank()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "q must not be empty");
+        }
+        if (limit < 1 || limit > MovieService.MAX_PAGE_SIZE) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "limit must be between 1 and " + MovieService.MAX_PAGE_SIZE);
+        }
+        if (offset < 0 || offset + limit > MAX_SEARCH_WINDOW) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "offset + limit must not exceed " + MAX_SEARCH_WINDOW);
+        }
+        return movieSearchIndex.search(query, limit, offset);
+    }
+}
@@ -1,132 +1,254 @@
 package com.example.movieapi.service;
 
-import ch.qos.logback.classic.Logger;
-import com.example.movieapi.controller.MovieController;
+import com.example.movieapi.cache.CatalogVersion;
+import com.example.movieapi.changes.MovieChangeLog;
+import com.example.movieapi.datasource.DataSourceRoute;
 import com.example.movieapi.dto.MovieDTO;
+import com.example.movieapi.dto.MovieFilter;
+import com.example.movieapi.dto.MoviePage;
+import com.example.movieapi.dto.MovieVersion;
 import com.example.movieapi.exceptions.MovieNotFoundException;
 import com.example.movieapi.model.Movie;
+import com.example.movieapi.model.MovieChange;
+import com.example.movieapi.repository.DatabaseConcurrencyLimiter;
+import com.example.movieapi.repository.LimitedTransactionTemplate;
 import com.example.movieapi.repository.MovieRepository;
-import org.slf4j.LoggerFactory;
+import com.example.movieapi.search.MovieSearchIndex;
+import com.example.movieapi.stats.MovieCounts;
+import io.micrometer.core.annotation.Timed;
+import jakarta.persistence.EntityManager;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.server.ResponseStatusException;
-import static org.springframework.hateoas.server.mvc.WebMvcLinkBuilder.*;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 @Service
+@Timed(value = "movies.service", histogram = true)
 public class MovieService {
 
+    //upper bound for the "limit" parameter of the listings
+    public static final int MAX_PAGE_SIZE = 1000;
+    //cache of GET /movies/{id}, keyed by id (configured in application.properties)
+    public static final String MOVIE_CACHE = "movies";
+
     private final MovieRepository movieRepository;
+    private final EntityManager entityManager;
+    private final Cache movieCache;
+    private final MovieSearchIndex movieSearchIndex;
+    private final MovieCounts movieCounts;
+    private final CatalogVersion catalogVersion;
+    private final MovieChangeLog movieChangeLog;
+    //writes => the movie row and its movie_changes row commit together, caches are only touched after the commit
+    private final TransactionTemplate transactionTemplate;
 
     //constructor for dependency injection
     @Autowired
-    public MovieService(MovieRepository movieRepository) {
+    public MovieService(MovieRepository movieRepository, EntityManager entityManager, CacheManager cacheManager,
+                        MovieSearchIndex movieSearchIndex, MovieCounts movieCounts,
+                        CatalogVersion catalogVersion, MovieChangeLog movieChangeLog,
+                        PlatformTransactionManager transactionManager, DatabaseConcurrencyLimiter databaseConcurrencyLimiter) {
         this.movieRepository = movieRepository;
+        this.entityManager = entityManager;
+        this.movieCache = cacheManager.getCache(MOVIE_CACHE);
+        this.movieSearchIndex = movieSearchIndex;
+        this.movieCounts = movieCounts;
+        this.catalogVersion = catalogVersion;
+        this.movieChangeLog = movieChangeLog;
+        this.transactionTemplate = new LimitedTransactionTemplate(transactionManager, databaseConcurrencyLimiter);
     }
 
-    public long getMoviesCount() {
-        return movieRepository.count();
+    //GET /simple and GET /movies -> returns one keyset page of movies in json structure
+    //GET /movies adds the self links (MovieLinks) once it knows the page changed, so the FE can
+    //click on each movie to get details of that movie
+    @Transactional(readOnly = true)
+    public MoviePage getAllMoviesSimple(MovieFilter filter, Long after, Long before, int limit) {
+        return findPage(filter, after, before, limit);
     }
 
-    //GET /movie -> returns all movies in json structure
-    public List<MovieDTO> getAllMoviesSimple() {
-        return movieRepository.findAll().stream()
-                .map(movie -> new MovieDTO(movie.getId(), movie.getTitle(), movie.getDirector(), movie.getYear()))
-                .collect(Collectors.toList());
+    //fetches limit + 1 rows => the extra row only tells whether there is a page after this one
+    private MoviePage findPage(MovieFilter filter, Long after, Long before, int limit) {
+        if (limit < 1 || limit > MAX_PAGE_SIZE) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "limit must be between 1 and " + MAX_PAGE_SIZE);
+        }
+        if (after != null && before != null) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "after and before cannot be combined");
+        }
+        Pageable window = PageRequest.of(0, limit + 1);
+
+        if (before != null) {
+            List<MovieDTO> movies = new ArrayList<>(movieRepository.findPageBefore(before, filter.getDirector(),
+                    filter.lowerYear(), filter.upperYear(), window));
+            boolean hasPrevious = movies.size() > limit;
+            if (hasPrevious) {
+                movies.remove(movies.size() - 1);
+            }
+            //walked backwards => restore ascending id order
+            Collections.reverse(movies);
+            return new MoviePage(movies, true, hasPrevious);
+        }
+
+        List<MovieDTO> movies = movieRepository.findPageAfter(after == null ? 0L : after, filter.getDirector(),
+                filter.lowerYear(), filter.upperYear(), window);
+        boolean hasNext = movies.size() > limit;
+        return new MoviePage(hasNext ? movies.subList(0, limit) : movies, hasNext, after != null);
     }
 
-    //endpoint /movies/{id} in this response. In this way you can give the FE
-    //click on each movie to get details of that movie
-    public List<MovieDTO> getAllMovies() {
-        return movieRepository.findAll().stream()
-                .map(movie -> {
-                    MovieDTO movieDTO = new MovieDTO(movie.getId(), movie.getTitle(), movie.getDirector(), movie.getYear());
-                    //add self-link to each MovieDTO
-                    movieDTO.add(linkTo(methodOn(MovieController.class).getMovieById(movie.getId())).withSelfRel());
-                    return movieDTO;
-                })
-                .collect(Collectors.toList());
+    //GET /movies/export -> hands every movie to the consumer one by one, in id order
+    //each row is detached once consumed so the persistence context never grows with the catalog
+    @Transactional(readOnly = true)
+    public void streamAllMovies(Consumer<Movie> consumer) {
+        try (Stream<Movie> movies = movieRepository.streamAll()) {
+            movies.forEach(movie -> {
+                consumer.accept(movie);
+                entityManager.detach(movie);
+            });
+        }
     }
 
     //GET /movies/{id} which returns 1 movie with given id.
+    //read-through cache => misses are cached as well (empty Optional) so unknown ids don't reach the db either,
+    //every write path evicts its id
+    //a miss runs the projection query in the read-only transaction of MovieRepository.findDtoById, not annotated here:
+    //a transaction around the whole method would check out a connection for cache hits as well
+    //shortly after a write the miss is read from the primary => a lagging replica's row is never cached
     public MovieDTO getMovieById(@PathVariable Long id){
-        Movie movie = movieRepository.findById(id)
-                .orElseThrow(() -> new MovieNotFoundException(id));
+        Optional<MovieDTO> cached;
+        try {
+            cached = movieCache.get(id, () -> {
+                if (!catalogVersion.replicaMayLag()) {
+                    return movieRepository.findDtoById(id);
+                }
+                try (DataSourceRoute.Pin pin = DataSourceRoute.primary()) {
+                    return movieRepository.findDtoById(id);
+                }
+            });
+        } catch (Cache.ValueRetrievalException e) {
+            //the cache wraps whatever the loader throws => unwrapped so GlobalExceptionHandler sees e.g. a
+            //DatabaseBusyException (503 + Retry-After) instead of a 500
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+        MovieDTO movie = cached.orElseThrow(() -> new MovieNotFoundException(id));
 
-        MovieDTO movieDTO = new MovieDTO(movie.getId(), movie.getTitle(), movie.getDirector(), movie.getYear());
+        //the cached instance is shared between requests => hand out a copy callers can add links to
+        return new MovieDTO(movie.getId(), movie.getTitle(), movie.getDirector(), movie.getYear(),
+                movie.getVersion(), movie.getUpdatedAt());
+    }
 
-        return movieDTO;
+    //conditional GET /movies/{id} => a cached movie already knows its version, otherwise a two-column query
+    //either way the full row is neither loaded nor mapped when the client copy is still current
+    public MovieVersion getMovieVersion(Long id) {
+        Cache.ValueWrapper cached = movieCache.get(id);
+        if (cached != null && cached.get() instanceof Optional<?> movie) {
+            return movie.map(MovieDTO.class::cast)
+                    .map(dto -> new MovieVersion(dto.getVersion(), dto.getUpdatedAt()))
+                    .orElseThrow(() -> new MovieNotFoundException(id));
+        }
+        return movieRepository.findVersionById(id).orElseThrow(() -> new MovieNotFoundException(id));
     }
 
     // POST /movie which has as body a movie and will create that movie
-
+    //no exists-check first => the unique index on (title, director, year) rejects duplicates in the same statement,
+    //GlobalExceptionHandler turns the DataIntegrityViolationException into a 409
     public ResponseEntity<Movie> addMovie(Movie movie) {
         //should add some input validation normally
-        boolean exists = movieRepository.existsByTitleAndDirectorAndYear(movie.getTitle(), movie.getDirector(), movie.getYear());
-        if (movie.getTitle() == null || movie.getTitle().trim().isEmpty() ||
-                movie.getDirector() == null || movie.getDirector().trim().isEmpty() ||
-                movie.getYear() < 1900) {
+        if (!isValid(movie)) {
             throw new ResponseStatusException(HttpStatus.BAD_REQUEST);
         }
 
-        if (exists) {
-            // Log because it doesn't show me the exception in the console
-            Logger logger = (Logger) LoggerFactory.getLogger(getClass());
-            logger.error("Conflict: Movie already exists with title {}, director {}, and year {}",
-                    movie.getTitle(), movie.getDirector(), movie.getYear());
-
-            throw new ResponseStatusException(HttpStatus.CONFLICT, "Movie already exists");
-        }
-        Movie savedMovie = movieRepository.save(movie);
+        //flush now so a duplicate fails here and not at some later commit
+        Movie savedMovie = transactionTemplate.execute(status -> {
+            Movie saved = movieRepository.saveAndFlush(movie);
+            movieChangeLog.record(MovieChange.inserted(saved));
+            //pending until the commit => a reconciliation running meanwhile can't count this movie twice
+            movieCounts.added(saved.getDirector(), saved.getYear());
+            return saved;
+        });
+        //the new id may have been cached as a miss before
+        movieCache.evict(savedMovie.getId());
+        movieSearchIndex.put(savedMovie.getId(), savedMovie.getTitle(), savedMovie.getDirector(), savedMovie.getYear());
+        //already committed => cached list pages are stale now
+        catalogVersion.bump();
         return ResponseEntity.status(HttpStatus.CREATED).body(savedMovie);
     }
 
     //endpoint called DEL /movie/{id} to remove a movie with given id
 
+    //the row is read first for its director/year (the counts), 0 deleted rows => someone else deleted it meanwhile
     public void deleteMovie(Long id) {
-        if (!movieRepository.existsById(id)) {
-            throw new MovieNotFoundException(id);
-        }
-        movieRepository.deleteById(id);
+        Movie movie = transactionTemplate.execute(status -> {
+            Movie existing = movieRepository.findById(id).orElseThrow(() -> new MovieNotFoundException(id));
+            if (movieRepository.deleteRowById(id) == 0) {
+                throw new MovieNotFoundException(id);
+            }
+            movieChangeLog.record(MovieChange.deleted(id));
+            movieCounts.removed(existing.getDirector(), existing.getYear());
+            return existing;
+        });
+        movieCache.evict(id);
+        movieSearchIndex.remove(id);
+        catalogVersion.bump();
     }
 
     //endpoint called PUT /movie/{id} that will update a movie of given id
 
-    public Movie updateMovie(Long id, Movie updatedMovie) {
+    //acceptedVersions = versions named by If-Match, null => any version
+    //the row is merged with the version read here => a write landing in between fails the update (409)
+    //instead of being silently overwritten
+    public Movie updateMovie(Long id, Movie updatedMovie, Set<Long> acceptedVersions) {
         //check if exists
         Movie existingMovie = movieRepository.findById(id)
                 .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Movie not found with id: " + id));
-
-        //check if it is already in the database
-        boolean exists = movieRepository.existsByTitleAndDirectorAndYear(
-                updatedMovie.getTitle(), updatedMovie.getDirector(), updatedMovie.getYear());
-        if (exists) {
-            // Log because it doesn't show me the exception in the console
-            Logger logger = (Logger) LoggerFactory.getLogger(getClass());
-            logger.error("Conflict: Movie already exists with title {}, director {}, and year {}",
-                    existingMovie.getTitle(), existingMovie.getDirector(), existingMovie.getYear());
-
-            throw new ResponseStatusException(HttpStatus.CONFLICT, "Movie already exists with the updated information");
+        if (acceptedVersions != null && !acceptedVersions.contains(existingMovie.getVersion())) {
+            throw new ResponseStatusException(HttpStatus.PRECONDITION_FAILED, "If-Match does not match the current version");
         }
 
-        if (updatedMovie.getTitle() == null || updatedMovie.getTitle().trim().isEmpty() ||
-                updatedMovie.getDirector() == null || updatedMovie.getDirector().trim().isEmpty() ||
-                updatedMovie.getYear() < 1900) {
+        if (!isValid(updatedMovie)) {
             throw new ResponseStatusException(HttpStatus.BAD_REQUEST);
         }
 
-        //update and save
+        String oldDirector = existingMovie.getDirector();
+        int oldYear = existingMovie.getYear();
+        //update and save => a clash with another movie is caught by the unique index (409)
         existingMovie.setTitle(updatedMovie.getTitle());
         existingMovie.setDirector(updatedMovie.getDirector());
         existingMovie.setYear(updatedMovie.getYear());
-        movieRepository.save(existingMovie);
-        return existingMovie;
+        Movie savedMovie = transactionTemplate.execute(status -> {
+            Movie saved = movieRepository.saveAndFlush(existingMovie);
+            movieChangeLog.record(MovieChange.updated(id, saved.getTitle(), saved.getDirector(), saved.getYear(),
+                    saved.getVersion()));
+            movieCounts.changed(oldDirector, oldYear, saved.getDirector(), saved.getYear());
+            return saved;
+        });
+        movieCache.evict(id);
+        movieSearchIndex.put(id, savedMovie.getTitle(), savedMovie.getDirector(), savedMovie.getYear());
+        catalogVersion.bump();
+        return savedMovie;
     }
-}
-
 
+    //same rules for every write path (add, update, bulk, reactive)
+    public static boolean isValid(Movie movie) {
+        return movie.getTitle() != null && !movie.getTitle().trim().isEmpty() &&
+                movie.getDirector() != null && !movie.getDirector().trim().isEmpty() &&
+                movie.getYear() >= 1900;
+    }
+}
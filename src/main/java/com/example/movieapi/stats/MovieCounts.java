@@ -0,0 +1,188 @@
+package com.example.movieapi.stats;
+
+import com.example.movieapi.dto.DirectorCount;
+import com.example.movieapi.dto.YearCount;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+//in-memory movie counts => GET /count and the grouped counts never scan the table
+//the write paths adjust them from inside their transaction: the adjustment is pending from then on and applied once
+//the transaction committed (dropped on a rollback), MovieCountService seeds and reconciles them
+@Component
+public class MovieCounts {
+
+    private final LongAdder total = new LongAdder();
+    private final ConcurrentMap<Integer, LongAdder> perYear = new ConcurrentHashMap<>();
+    //sorted => a page of directors is read from where the previous one ended, not from a copy of all of them
+    private final ConcurrentNavigableMap<String, LongAdder> perDirector = new ConcurrentSkipListMap<>();
+    //number of committed writes so far => a reconciliation only replaces the counts when no write raced with its queries
+    private final LongAdder writes = new LongAdder();
+    //transactions with adjustments not applied yet => their rows may already be in the count queries of a
+    //reconciliation while their adjustment comes after it, a reset would count them twice
+    private final LongAdder pending = new LongAdder();
+    //adjustments share the read lock (LongAdder keeps them contention free), a reset takes the write lock
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    public void added(String director, int year) {
+        adjust(director, year, 1);
+    }
+
+    public void removed(String director, int year) {
+        adjust(director, year, -1);
+    }
+
+    public void changed(String oldDirector, int oldYear, String newDirector, int newYear) {
+        if (oldYear == newYear && oldDirector.equals(newDirector)) {
+            return;
+        }
+        apply(() -> {
+            add(perYear, oldYear, -1);
+            add(perYear, newYear, 1);
+            add(perDirector, oldDirector, -1);
+            add(perDirector, newDirector, 1);
+        });
+    }
+
+    private void adjust(String director, int year, long delta) {
+        apply(() -> {
+            total.add(delta);
+            add(perYear, year, delta);
+            add(perDirector, director, delta);
+        });
+    }
+
+    //inside a transaction => pending until it completes, outside => right away
+    private void apply(Runnable adjustment) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            lock.readLock().lock();
+            try {
+                adjustment.run();
+                writes.increment();
+            } finally {
+                lock.readLock().unlock();
+            }
+            return;
+        }
+        Pending pendingWrite = (Pending) TransactionSynchronizationManager.getResource(this);
+        if (pendingWrite == null) {
+            pendingWrite = new Pending();
+            //counted before the commit => a reconciliation whose queries may see this transaction's rows skips its reset
+            lock.readLock().lock();
+            try {
+                pending.increment();
+            } finally {
+                lock.readLock().unlock();
+            }
+            TransactionSynchronizationManager.bindResource(this, pendingWrite);
+            TransactionSynchronizationManager.registerSynchronization(pendingWrite);
+        }
+        pendingWrite.adjustments.add(adjustment);
+    }
+
+    //the adjustments of one transaction, applied together once it committed
+    private final class Pending implements TransactionSynchronization {
+        private final List<Runnable> adjustments = new ArrayList<>();
+
+        @Override
+        public void afterCompletion(int status) {
+            TransactionSynchronizationManager.unbindResourceIfPossible(MovieCounts.this);
+            lock.readLock().lock();
+            try {
+                if (status == STATUS_COMMITTED) {
+                    adjustments.forEach(Runnable::run);
+                    writes.increment();
+                }
+                pending.decrement();
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+    }
+
+    private static <K> void add(ConcurrentMap<K, LongAdder> counts, K key, long delta) {
+        counts.computeIfAbsent(key, k -> new LongAdder()).add(delta);
+    }
+
+    //many writers under the shared lock => the write counter is a LongAdder like the counts (no monitor every write
+    //queues on), exact under the write lock where reset compares it
+    public long writes() {
+        return writes.sum();
+    }
+
+    //replaces every count with what the db says, unless a write was applied since expectedWrites was read or one is
+    //still pending (its row may or may not be part of the query results) => false, the next reconciliation tries again
+    public boolean reset(long expectedWrites, List<YearCount> years, List<DirectorCount> directors) {
+        lock.writeLock().lock();
+        try {
+            if (pending.sum() != 0 || writes.sum() != expectedWrites) {
+                return false;
+            }
+            total.reset();
+            perYear.clear();
+            perDirector.clear();
+            for (YearCount year : years) {
+                total.add(year.count());
+                add(perYear, year.year(), year.count());
+            }
+            for (DirectorCount director : directors) {
+                add(perDirector, director.director(), director.count());
+            }
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public long total() {
+        return total.sum();
+    }
+
+    public SortedMap<Integer, Long> perYear() {
+        return snapshot(perYear);
+    }
+
+    public SortedMap<String, Long> perDirector() {
+        return snapshot(perDirector);
+    }
+
+    //at most limit directors sorted by name, the first one after "after" (null => from the start)
+    public SortedMap<String, Long> perDirector(String after, int limit) {
+        SortedMap<String, Long> page = new TreeMap<>();
+        for (Map.Entry<String, LongAdder> entry : (after == null ? perDirector : perDirector.tailMap(after, false)).entrySet()) {
+            if (page.size() == limit) {
+                break;
+            }
+            long count = entry.getValue().sum();
+            if (count > 0) {
+                page.put(entry.getKey(), count);
+            }
+        }
+        return page;
+    }
+
+    //keys whose movies are all gone stay in the maps until the next reset => left out here
+    private static <K> SortedMap<K, Long> snapshot(ConcurrentMap<K, LongAdder> counts) {
+        SortedMap<K, Long> snapshot = new TreeMap<>();
+        for (Map.Entry<K, LongAdder> entry : counts.entrySet()) {
+            long count = entry.getValue().sum();
+            if (count > 0) {
+                snapshot.put(entry.getKey(), count);
+            }
+        }
+        return snapshot;
+    }
+}
@@ -1,3 +1,5 @@
-INSERT INTO movies (title, director, "year") VALUES ('The Shawshank Redemption', 'Frank Darabont', 1994);
-INSERT INTO movies (title, director, "year") VALUES ('The Godfather', 'Francis Ford Coppola', 1972);
-INSERT INTO movies (title, director, "year") VALUES ('The Dark Knight', 'Christopher Nolan', 2008);
+-- sample movies for the in-memory database, not run by the prod profile
+-- MERGE on the unique key => re-running the script does not duplicate them
+MERGE INTO movies (title, director, "year") KEY (title, director, "year") VALUES ('The Shawshank Redemption', 'Frank Darabont', 1994);
+MERGE INTO movies (title, director, "year") KEY (title, director, "year") VALUES ('The Godfather', 'Francis Ford Coppola', 1972);
+MERGE INTO movies (title, director, "year") KEY (title, director, "year") VALUES ('The Dark Knight', 'Christopher Nolan', 2008);
@@ -1,6 +1,40 @@
-CREATE TABLE movies (
-    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+-- runs on every start => idempotent, a file database (prod profile) keeps its tables and rows
+-- increment matches the allocationSize of Movie.id, rows inserted by plain SQL (data.sql) take the default
+CREATE SEQUENCE IF NOT EXISTS movies_seq START WITH 1 INCREMENT BY 50;
+
+CREATE TABLE IF NOT EXISTS movies (
+    id BIGINT DEFAULT NEXT VALUE FOR movies_seq PRIMARY KEY,
     title VARCHAR(255),
     director VARCHAR(255),
-    "year" INT
+    "year" INT,
+    -- optimistic locking (@Version) and the ETag of the movie
+    version BIGINT DEFAULT 0 NOT NULL,
+    -- Last-Modified of the movie, rows inserted by plain SQL take the insert time
+    updated_at TIMESTAMP(6) WITH TIME ZONE DEFAULT CURRENT_TIMESTAMP NOT NULL,
+    -- duplicates are rejected by the index itself => no racy exists-check before the insert
+    CONSTRAINT uk_movies_title_director_year UNIQUE (title, director, "year")
 );
+
+-- keyset pagination filters => the trailing id keeps "ORDER BY id" inside the index
+CREATE INDEX IF NOT EXISTS idx_movies_director_id ON movies (director, id);
+CREATE INDEX IF NOT EXISTS idx_movies_year_id ON movies ("year", id);
+
+-- change feed (GET /movies/changes, /movies/changes/stream) => one row per inserted, updated or deleted movie,
+-- written in the same transaction as the change itself, seq taken from movie_changes_seq right before the commit
+-- title/director/year/version are the values after the change, null for a delete
+CREATE TABLE IF NOT EXISTS movie_changes (
+    seq BIGINT PRIMARY KEY,
+    movie_id BIGINT NOT NULL,
+    change_type VARCHAR(6) NOT NULL,
+    title VARCHAR(255),
+    director VARCHAR(255),
+    "year" INT,
+    version BIGINT,
+    changed_at TIMESTAMP(6) WITH TIME ZONE NOT NULL
+);
+
+-- one sequence for every jvm on the database (e.g. during a rolling deploy) => seqs never clash
+CREATE SEQUENCE IF NOT EXISTS movie_changes_seq START WITH 1 INCREMENT BY 1;
+
+-- pruning by age
+CREATE INDEX IF NOT EXISTS idx_movie_changes_changed_at ON movie_changes (changed_at);
@@ -0,0 +1,63 @@
+package com.example.movieapi;
+
+import com.example.movieapi.model.Movie;
+import com.example.movieapi.service.MovieCountService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+//bulk max-rows low => a selection wider than the cap is easy to build
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+		"spring.datasource.url=jdbc:h2:mem:bulklimits",
+		"movieapi.bulk.max-rows=5"})
+@AutoConfigureMockMvc
+class BulkLimitTests {
+
+	@Autowired
+	private TestRestTemplate restTemplate;
+
+	@Autowired
+	private MockMvc mockMvc;
+
+	@Autowired
+	private MovieCountService movieCountService;
+
+	// Test more than max-rows => refused, whether a filter matching (nearly) everything or too many ids
+	@Test
+	public void testBulkWritesOverMaxRowsRejected() throws Exception {
+		List<Long> wide = new ArrayList<>();
+		for (int i = 0; i < 6; i++) {
+			Movie movie = restTemplate.postForObject("/add", new Movie("Bulk Wide " + i, "Bulk Wide Director", 1960 + i), Movie.class);
+			wide.add(movie.getId());
+		}
+		long before = movieCountService.getMoviesCount();
+		mockMvc.perform(delete("/movies").param("fromYear", "0")).andExpect(status().isBadRequest());
+		mockMvc.perform(delete("/movies").param("director", "Bulk Wide Director")).andExpect(status().isBadRequest());
+		mockMvc.perform(delete("/movies").param("id", wide.stream().map(String::valueOf).collect(Collectors.joining(","))))
+				.andExpect(status().isBadRequest());
+		mockMvc.perform(patch("/movies").param("director", "Bulk Wide Director")
+						.contentType(MediaType.APPLICATION_JSON).content("{\"year\":1999}"))
+				.andExpect(status().isBadRequest());
+		assertThat(movieCountService.getMoviesCount()).isEqualTo(before);
+
+		//within the cap => done
+		mockMvc.perform(delete("/movies").param("director", "Bulk Wide Director").param("fromYear", "1961"))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.deleted").value(5));
+		restTemplate.delete("/delete/" + wide.get(0));
+	}
+}
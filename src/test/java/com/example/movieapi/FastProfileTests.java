@@ -0,0 +1,38 @@
+package com.example.movieapi;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+//"fast" profile (what the fast-startup build is processed for) => schema.sql alone builds a working schema,
+//lazily initialized beans still serve the first request, the h2 console is gone
+class FastProfileTests {
+
+	@Test
+	public void testFirstMovieServed() throws Exception {
+		try (ConfigurableApplicationContext context = new SpringApplicationBuilder(MovieApiApplication.class).run(
+				"--spring.profiles.active=fast",
+				"--spring.main.lazy-initialization=true",
+				"--spring.datasource.url=jdbc:h2:mem:fast",
+				"--server.port=0")) {
+			String baseUrl = "http://localhost:" + context.getEnvironment().getProperty("local.server.port");
+			HttpClient client = HttpClient.newHttpClient();
+
+			HttpResponse<String> movie = client.send(HttpRequest.newBuilder(URI.create(baseUrl + "/movies/1")).build(),
+					HttpResponse.BodyHandlers.ofString());
+			assertThat(movie.statusCode()).isEqualTo(200);
+			assertThat(movie.body()).contains("The Shawshank Redemption");
+
+			HttpResponse<String> console = client.send(HttpRequest.newBuilder(URI.create(baseUrl + "/h2")).build(),
+					HttpResponse.BodyHandlers.ofString());
+			assertThat(console.statusCode()).isEqualTo(404);
+		}
+	}
+}
@@ -1,29 +1,87 @@
 package com.example.movieapi;
 
+import com.example.movieapi.changes.MovieChangeLog;
+import com.example.movieapi.changes.MovieChangeStream;
+import com.example.movieapi.codec.MovieProtobuf;
+import com.example.movieapi.codec.MovieProtobufHttpMessageConverter;
+import com.example.movieapi.dto.IngestStatus;
 import com.example.movieapi.dto.MovieDTO;
+import com.example.movieapi.exceptions.GlobalExceptionHandler;
+import com.example.movieapi.exceptions.IngestQueueFullException;
 import com.example.movieapi.model.Movie;
+import com.example.movieapi.model.MovieChange;
+import com.example.movieapi.repository.DatabaseConcurrencyLimiter;
+import com.example.movieapi.repository.MovieChangeRepository;
+import com.example.movieapi.repository.MovieRepository;
+import com.example.movieapi.search.MovieSearchIndex;
+import com.example.movieapi.search.SearchResult;
+import com.example.movieapi.service.MovieCountService;
+import com.example.movieapi.service.MovieImportService;
+import com.example.movieapi.service.MovieIngestService;
+import com.example.movieapi.stats.MovieCounts;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import com.zaxxer.hikari.HikariDataSource;
 import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import com.fasterxml.jackson.dataformat.smile.databind.SmileMapper;
+import org.hibernate.exception.ConstraintViolationException;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.hateoas.CollectionModel;
+import org.springframework.hateoas.IanaLinkRelations;
 import org.springframework.http.*;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.springframework.test.util.AssertionErrors.assertNotNull;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
 
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.SmartLifecycle;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import jakarta.persistence.EntityManager;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.net.URI;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
 
 @SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
 @AutoConfigureMockMvc
@@ -35,6 +93,54 @@ class MovieApiApplicationTests {
 	@Autowired
 	private MockMvc mockMvc;
 
+	@Autowired
+	private DatabaseConcurrencyLimiter databaseConcurrencyLimiter;
+
+	@Autowired
+	private HikariDataSource hikariDataSource;
+
+	@Value("${movieapi.db.max-concurrency}")
+	private int dbMaxConcurrency;
+
+	@Autowired
+	private MovieCountService movieCountService;
+
+	@Autowired
+	private MovieCounts movieCounts;
+
+	@Autowired
+	private MovieRepository movieRepository;
+
+	@Autowired
+	private ApplicationContext applicationContext;
+
+	@Autowired
+	private MovieImportService movieImportService;
+
+	@Autowired
+	private MovieIngestService movieIngestService;
+
+	@Autowired
+	private MovieChangeLog movieChangeLog;
+
+	@Autowired
+	private MovieChangeRepository movieChangeRepository;
+
+	@Autowired
+	private EntityManager entityManager;
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	@Autowired
+	private PlatformTransactionManager transactionManager;
+
+	@Autowired
+	private ObjectMapper springObjectMapper;
+
+	@LocalServerPort
+	private int port;
+
 	// Util for converting JSON response to objects
 	private final ObjectMapper objectMapper = new ObjectMapper();
 
@@ -65,6 +171,8 @@ class MovieApiApplicationTests {
 		for (JsonNode movie : moviesList) {
 			JsonNode selfLink = movie.path("_links").path("self").path("href");
 			assertNotNull(selfLink.asText(), "Self link should not be null");
+			//same href linkTo(methodOn(MovieController.class).getMovieById(id)) gives
+			assertThat(selfLink.asText()).isEqualTo(restTemplate.getRootUri() + "/movies/" + movie.path("id").asLong());
 		}
 
 		//verify collection's self link
@@ -72,6 +180,594 @@ class MovieApiApplicationTests {
 		assertNotNull(collectionSelfLink.asText(), "Collection self link should not be null");
 	}
 
+	// Test keyset pagination and filters on /movies
+	@Test
+	public void testGetAllMoviesKeysetPagination() throws Exception {
+		Long first = createTestMovie("Paged One", "Paging Director", 2001);
+		Long second = createTestMovie("Paged Two", "Paging Director", 2002);
+		Long third = createTestMovie("Paged Three", "Paging Director", 2003);
+
+		JsonNode firstPage = objectMapper.readTree(restTemplate.getForObject("/movies?director=Paging Director&limit=2", String.class));
+		JsonNode firstMovies = firstPage.path("_embedded").path("movieDTOList");
+		assertThat(firstMovies).hasSize(2);
+		assertThat(firstMovies.get(0).path("id").asLong()).isEqualTo(first);
+		assertThat(firstMovies.get(1).path("id").asLong()).isEqualTo(second);
+		assertThat(firstPage.path("_links").has("prev")).isFalse();
+
+		//follow the next link => cursor is the last id of the page
+		String next = firstPage.path("_links").path("next").path("href").asText();
+		assertThat(next).contains("after=" + second);
+		JsonNode secondPage = objectMapper.readTree(restTemplate.getForObject(java.net.URI.create(next), String.class));
+		JsonNode secondMovies = secondPage.path("_embedded").path("movieDTOList");
+		assertThat(secondMovies).hasSize(1);
+		assertThat(secondMovies.get(0).path("id").asLong()).isEqualTo(third);
+		assertThat(secondPage.path("_links").has("next")).isFalse();
+
+		//and back again
+		String prev = secondPage.path("_links").path("prev").path("href").asText();
+		assertThat(prev).contains("before=" + third);
+		JsonNode backPage = objectMapper.readTree(restTemplate.getForObject(java.net.URI.create(prev), String.class));
+		assertThat(backPage.path("_embedded").path("movieDTOList")).hasSize(2);
+
+		//year range filter on the simple listing
+		List<MovieDTO> ranged = objectMapper.readValue(
+				restTemplate.getForObject("/simple?director=Paging Director&fromYear=2002&toYear=2003", String.class),
+				new TypeReference<List<MovieDTO>>() {
+				});
+		assertThat(ranged).extracting(MovieDTO::getId).containsExactly(second, third);
+	}
+
+	// Test an out of range page size
+	@Test
+	public void testGetAllMoviesInvalidLimit() {
+		ResponseEntity<String> response = restTemplate.getForEntity("/movies?limit=0", String.class);
+		assertThat(response.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
+	}
+
+	// Test the ndjson export of the whole catalog
+	@Test
+	public void testExportMoviesAsNdjson() throws Exception {
+		Long movieId = createTestMovie("Exported Movie", "Export Director", 2010);
+
+		ResponseEntity<String> response = restTemplate.getForEntity("/movies/export", String.class);
+		assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+		assertThat(response.getHeaders().getContentType().toString()).startsWith("application/x-ndjson");
+
+		//one compact json object per line
+		String[] lines = response.getBody().split("\n");
+		assertThat(lines.length).isGreaterThanOrEqualTo(4);
+		List<MovieDTO> movies = new ArrayList<>();
+		for (String line : lines) {
+			assertThat(line).startsWith("{").endsWith("}");
+			movies.add(objectMapper.readValue(line, MovieDTO.class));
+		}
+		assertThat(movies).extracting(MovieDTO::getTitle).contains("The Godfather", "Exported Movie");
+		assertThat(movies).extracting(MovieDTO::getId).contains(movieId).isSorted();
+	}
+
+	// Test the same endpoints in cbor, smile and protobuf
+	@Test
+	public void testBinaryResponseFormats() throws Exception {
+		Long movieId = createTestMovie("Binary Movie", "Binary Director", 2014);
+
+		for (ObjectMapper mapper : List.of(new CBORMapper(), new SmileMapper())) {
+			MediaType mediaType = mapper instanceof CBORMapper ? MediaType.APPLICATION_CBOR : new MediaType("application", "x-jackson-smile");
+			ResponseEntity<byte[]> response = getBytes("/simple?limit=1000", mediaType);
+			assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+			assertThat(response.getHeaders().getContentType().isCompatibleWith(mediaType)).isTrue();
+			assertThat(response.getHeaders().getVary()).contains(HttpHeaders.ACCEPT);
+			List<MovieDTO> movies = mapper.readValue(response.getBody(), new TypeReference<List<MovieDTO>>() {
+			});
+			assertThat(movies).extracting(MovieDTO::getTitle).contains("The Godfather", "Binary Movie");
+		}
+
+		ResponseEntity<byte[]> movie = getBytes("/movies/" + movieId, MovieProtobufHttpMessageConverter.APPLICATION_PROTOBUF);
+		assertThat(movie.getStatusCode()).isEqualTo(HttpStatus.OK);
+		MovieDTO decoded = MovieProtobuf.readMovie(new ByteArrayInputStream(movie.getBody()));
+		assertThat(decoded.getId()).isEqualTo(movieId);
+		assertThat(decoded.getTitle()).isEqualTo("Binary Movie");
+		assertThat(decoded.getDirector()).isEqualTo("Binary Director");
+		assertThat(decoded.getYear()).isEqualTo(2014);
+
+		//collection model => movies plus the paging links
+		ResponseEntity<byte[]> page = getBytes("/movies?limit=2", MovieProtobufHttpMessageConverter.APPLICATION_PROTOBUF);
+		assertThat(page.getStatusCode()).isEqualTo(HttpStatus.OK);
+		CollectionModel<MovieDTO> model = MovieProtobuf.readMovieList(new ByteArrayInputStream(page.getBody()));
+		assertThat(model.getContent()).hasSize(2);
+		assertThat(model.getLink(IanaLinkRelations.NEXT)).isPresent();
+		//protobuf is only offered for movies
+		assertThat(getBytes("/count", MovieProtobufHttpMessageConverter.APPLICATION_PROTOBUF).getStatusCode())
+				.isEqualTo(HttpStatus.NOT_ACCEPTABLE);
+
+		//no Accept preference => still json
+		ResponseEntity<String> json = restTemplate.getForEntity("/simple", String.class);
+		assertThat(json.getHeaders().getContentType().isCompatibleWith(MediaType.APPLICATION_JSON)).isTrue();
+	}
+
+	private ResponseEntity<byte[]> getBytes(String url, MediaType accept) {
+		HttpHeaders headers = new HttpHeaders();
+		headers.setAccept(List.of(accept));
+		return restTemplate.exchange(url, HttpMethod.GET, new HttpEntity<>(headers), byte[].class);
+	}
+
+	// Test json is compact unless the request asks for ?pretty
+	@Test
+	public void testPrettyPrintOnRequest() {
+		assertThat(restTemplate.getForObject("/movies/1", String.class)).doesNotContain("\n");
+		assertThat(restTemplate.getForObject("/movies/1?pretty", String.class)).contains("\n  \"title\"");
+		assertThat(restTemplate.getForObject("/movies?limit=1&pretty=true", String.class)).contains("\n  \"_embedded\"");
+		assertThat(restTemplate.getForObject("/simple?limit=1&pretty=false", String.class)).doesNotContain("\n");
+	}
+
+	// Test repeated reads of one movie are served by the cache
+	@Test
+	public void testGetMovieByIdIsCached() throws Exception {
+		Long movieId = createTestMovie("Cached Movie", "Cache Director", 2012);
+		double hitsBefore = cacheGets("hit");
+
+		assertThat(restTemplate.getForEntity("/movies/" + movieId, String.class).getStatusCode()).isEqualTo(HttpStatus.OK);
+		assertThat(restTemplate.getForEntity("/movies/" + movieId, String.class).getStatusCode()).isEqualTo(HttpStatus.OK);
+
+		assertThat(cacheGets("hit")).isGreaterThan(hitsBefore);
+
+		//update evicts => the next read sees the new title
+		Movie updatedDetails = new Movie("Cached Movie Renamed", "Cache Director", 2012);
+		restTemplate.put("/update/" + movieId, updatedDetails);
+		MovieDTO fetched = restTemplate.getForObject("/movies/" + movieId, MovieDTO.class);
+		assertThat(fetched.getTitle()).isEqualTo("Cached Movie Renamed");
+	}
+
+	private double cacheGets(String result) throws Exception {
+		String metric = restTemplate.getForObject("/actuator/metrics/cache.gets?tag=cache:movies&tag=result:" + result, String.class);
+		return objectMapper.readTree(metric).path("measurements").get(0).path("value").asDouble();
+	}
+
+	// Test list pages are replayed from the payload cache until the next write
+	@Test
+	public void testListPagesServedFromPayloadCache() throws Exception {
+		String url = "/simple?director=Payload Director&limit=500";
+		createTestMovie("Payload One", "Payload Director", 2015);
+		String first = restTemplate.getForObject(url, String.class);
+		double hitsBefore = metric("cache.gets?tag=cache:payloads&tag=result:hit");
+
+		assertThat(restTemplate.getForObject(url, String.class)).isEqualTo(first);
+		assertThat(metric("cache.gets?tag=cache:payloads&tag=result:hit")).isGreaterThan(hitsBefore);
+
+		//gzip copy of the same bytes for the clients that accept it
+		HttpHeaders headers = new HttpHeaders();
+		headers.set(HttpHeaders.ACCEPT_ENCODING, "br;q=1.0, gzip;q=0.8");
+		//enough movies for the page to cross the compression threshold
+		for (int i = 0; i < 15; i++) {
+			createTestMovie("Payload Two part " + i, "Payload Director", 2016);
+		}
+		ResponseEntity<byte[]> gzipped = restTemplate.exchange(url, HttpMethod.GET, new HttpEntity<>(headers), byte[].class);
+		assertThat(gzipped.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING)).isEqualTo("gzip");
+		assertThat(gzipped.getHeaders().getVary()).contains(HttpHeaders.ACCEPT, HttpHeaders.ACCEPT_ENCODING);
+		try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(gzipped.getBody()))) {
+			String inflated = new String(in.readAllBytes(), java.nio.charset.StandardCharsets.UTF_8);
+			//the write above made the first page stale
+			assertThat(inflated).contains("Payload One", "Payload Two").isEqualTo(restTemplate.getForObject(url, String.class));
+		}
+
+		//hal pages keep their ETag, the gzip variant gets its own and both revalidate
+		headers.set(HttpHeaders.ACCEPT, "application/hal+json");
+		String movies = "/movies?director=Payload Director";
+		ResponseEntity<String> page = restTemplate.exchange(movies, HttpMethod.GET, new HttpEntity<>(headers), String.class);
+		String etag = page.getHeaders().getETag();
+		assertThat(etag).endsWith("-gzip\"");
+		headers.setIfNoneMatch(etag);
+		assertThat(restTemplate.exchange(movies, HttpMethod.GET, new HttpEntity<>(headers), String.class).getStatusCode())
+				.isEqualTo(HttpStatus.NOT_MODIFIED);
+	}
+
+	//per handler/service/repository method timers, sql statement counts and the pool metrics are all registered
+	//(the prometheus scrape endpoint itself is not exported in tests)
+	@Test
+	public void testRequestMetricsExposed() throws Exception {
+		restTemplate.getForEntity("/movies?limit=5", String.class);
+
+		assertThat(metric("movies.controller?tag=method:getAllMovies")).isPositive();
+		assertThat(metric("movies.service?tag=method:getAllMoviesSimple")).isPositive();
+		assertThat(metric("movies.repository?tag=method:MovieRepository.findPageAfter")).isPositive();
+		assertThat(metric("movies.sql.statements?tag=method:MovieRepository.findPageAfter")).isPositive();
+		assertThat(metric("movies.sql.request.statements?tag=uri:/movies")).isPositive();
+		assertThat(restTemplate.getForEntity("/actuator/metrics/hikaricp.connections.active?tag=pool:movies", String.class)
+				.getStatusCode()).isEqualTo(HttpStatus.OK);
+	}
+
+	//first measurement of an actuator metric (COUNT for timers and summaries)
+	private double metric(String nameAndTags) throws Exception {
+		String metric = restTemplate.getForObject("/actuator/metrics/" + nameAndTags, String.class);
+		return objectMapper.readTree(metric).path("measurements").get(0).path("value").asDouble();
+	}
+
+	// Test the bulk insert reports every row
+	@Test
+	public void testBulkAddMovies() throws Exception {
+		String body = "["
+				+ "{\"title\":\"Bulk One\",\"director\":\"Bulk Director\",\"year\":2015},"
+				+ "{\"title\":\"The Godfather\",\"director\":\"Francis Ford Coppola\",\"year\":1972},"
+				+ "{\"title\":\"Bulk One\",\"director\":\"Bulk Director\",\"year\":2015},"
+				+ "{\"title\":\"\",\"director\":\"Bulk Director\",\"year\":2015},"
+				+ "{\"title\":\"Bulk Two\",\"director\":\"Bulk Director\",\"year\":\"soon\"},"
+				+ "{\"title\":\"Bulk Three\",\"director\":\"Bulk Director\",\"year\":2016}"
+				+ "]";
+		HttpHeaders headers = new HttpHeaders();
+		headers.setContentType(MediaType.APPLICATION_JSON);
+
+		ResponseEntity<String> response = restTemplate.postForEntity("/movies/bulk", new HttpEntity<>(body, headers), String.class);
+		assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+
+		JsonNode results = objectMapper.readTree(response.getBody());
+		assertThat(results).hasSize(6);
+		assertThat(results.get(0).path("status").asText()).isEqualTo("ACCEPTED");
+		assertThat(results.get(1).path("status").asText()).isEqualTo("CONFLICT");
+		assertThat(results.get(2).path("status").asText()).isEqualTo("CONFLICT");
+		assertThat(results.get(3).path("status").asText()).isEqualTo("INVALID");
+		assertThat(results.get(4).path("status").asText()).isEqualTo("INVALID");
+		assertThat(results.get(5).path("status").asText()).isEqualTo("ACCEPTED");
+
+		long id = results.get(5).path("id").asLong();
+		MovieDTO fetched = restTemplate.getForObject("/movies/" + id, MovieDTO.class);
+		assertThat(fetched.getTitle()).isEqualTo("Bulk Three");
+	}
+
+	// Test the bulk insert accepts ndjson
+	@Test
+	public void testBulkAddMoviesNdjson() throws Exception {
+		String body = "{\"title\":\"Ndjson One\",\"director\":\"Ndjson Director\",\"year\":2017}\n"
+				+ "{\"title\":\"Ndjson Two\",\"director\":\"Ndjson Director\",\"year\":2018}\n";
+		HttpHeaders headers = new HttpHeaders();
+		headers.setContentType(MediaType.parseMediaType("application/x-ndjson"));
+
+		ResponseEntity<String> response = restTemplate.postForEntity("/movies/bulk", new HttpEntity<>(body, headers), String.class);
+		assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+
+		JsonNode results = objectMapper.readTree(response.getBody());
+		assertThat(results).hasSize(2);
+		for (JsonNode result : results) {
+			assertThat(result.path("status").asText()).isEqualTo("ACCEPTED");
+		}
+	}
+
+	// Test a bulk row failing on something else than the movie key => a 500, never reported as a duplicate
+	@Test
+	public void testBulkAddOtherIntegrityViolationIsServerError() {
+		//longer than the VARCHAR(255) column
+		String body = "{\"title\":\"" + "Long".repeat(100) + "\",\"director\":\"Bulk Long Director\",\"year\":2019}\n";
+		HttpHeaders headers = new HttpHeaders();
+		headers.setContentType(MediaType.parseMediaType("application/x-ndjson"));
+
+		ResponseEntity<String> response = restTemplate.postForEntity("/movies/bulk", new HttpEntity<>(body, headers), String.class);
+		assertThat(response.getStatusCode()).isEqualTo(HttpStatus.INTERNAL_SERVER_ERROR);
+		assertThat(response.getBody()).doesNotContain("CONFLICT");
+	}
+
+	// Test search by title and director words, prefixes included
+	@Test
+	public void testSearchMovies() throws Exception {
+		Long first = createTestMovie("Zyzzyva Nights", "Quorra Lindqvist", 2011);
+		Long second = createTestMovie("Return Of Zyzzyva", "Other Director", 2013);
+
+		//prefix of a title word => both, sorted by id for equal scores
+		JsonNode byPrefix = objectMapper.readTree(restTemplate.getForObject("/movies/search?q=zyzz", String.class));
+		JsonNode hits = byPrefix.path("_embedded").path("movieDTOList");
+		assertThat(hits).hasSize(2);
+		assertThat(hits.get(0).path("id").asLong()).isEqualTo(first);
+		assertThat(hits.get(0).path("_links").path("self").path("href").asText()).endsWith("/movies/" + first);
+
+		//title word and director prefix => only the first one
+		JsonNode combined = objectMapper.readTree(restTemplate.getForObject("/movies/search?q=zyzzyva lindq", String.class));
+		assertThat(combined.path("_embedded").path("movieDTOList")).hasSize(1);
+
+		//deleted movies leave the index
+		restTemplate.delete("/delete/" + second);
+		JsonNode afterDelete = objectMapper.readTree(restTemplate.getForObject("/movies/search?q=zyzzyva&limit=1", String.class));
+		assertThat(afterDelete.path("_embedded").path("movieDTOList")).hasSize(1);
+		assertThat(afterDelete.path("_links").has("next")).isFalse();
+
+		//seeded at startup
+		JsonNode seeded = objectMapper.readTree(restTemplate.getForObject("/movies/search?q=godf", String.class));
+		assertThat(seeded.path("_embedded").path("movieDTOList").get(0).path("title").asText()).isEqualTo("The Godfather");
+	}
+
+	// Test a prefix expanding to many tokens => every expansion is ranked and counted, none is dropped
+	@Test
+	public void testSearchPrefixExpandsFully() {
+		MovieSearchIndex index = new MovieSearchIndex();
+		for (int i = 1; i <= 100; i++) {
+			index.put(i, "Zephyr" + i + " Story", "Director " + i, 2000);
+		}
+		index.put(1000, "Zephyr", "Someone", 2001);
+
+		assertThat(index.search("zeph", 10, 0).getTotal()).isEqualTo(101);
+		//exact title word first, then the prefix matches by id
+		SearchResult ranked = index.search("zephyr", 3, 0);
+		assertThat(ranked.getMovies()).extracting(MovieDTO::getId).containsExactly(1000L, 1L, 2L);
+		//the other word is checked on each movie of the most selective one
+		assertThat(index.search("zeph story", 200, 0).getTotal()).isEqualTo(100);
+		assertThat(index.search("story zephyr99", 10, 0).getMovies()).extracting(MovieDTO::getId).containsExactly(99L);
+	}
+
+	// Test every db slot is given back once the requests are done
+	@Test
+	public void testDatabaseConcurrencyLimiterReleasesPermits() {
+		//background jobs never hold one => all of them are free between requests
+		int permits = dbMaxConcurrency;
+		assertThat(databaseConcurrencyLimiter.availablePermits()).isEqualTo(permits);
+		Long movieId = createTestMovie("Limited Movie", "Limit Director", 2014);
+		restTemplate.getForEntity("/movies/" + movieId, String.class);
+		restTemplate.getForEntity("/movies?limit=5", String.class);
+		restTemplate.getForEntity("/movies/export", String.class);
+
+		assertThat(databaseConcurrencyLimiter.availablePermits()).isEqualTo(permits);
+	}
+
+	// Test a programmatic transaction (POST /add) waits for a db slot without holding a connection, then gets a 503
+	@Test
+	public void testDatabaseBusyOnTransactionTemplate() throws Exception {
+		//background jobs (change log poll, count reconciliation) never take one => the requests own every permit
+		int permits = dbMaxConcurrency;
+		CountDownLatch release = new CountDownLatch(1);
+		CountDownLatch held = new CountDownLatch(permits);
+		ExecutorService holders = Executors.newFixedThreadPool(permits + 1);
+		try {
+			//every slot taken, no connection borrowed
+			for (int i = 0; i < permits; i++) {
+				holders.submit(() -> databaseConcurrencyLimiter.limit(() -> {
+					held.countDown();
+					try {
+						return release.await(30, TimeUnit.SECONDS);
+					} catch (InterruptedException e) {
+						throw new IllegalStateException(e);
+					}
+				}));
+			}
+			assertThat(held.await(10, TimeUnit.SECONDS)).isTrue();
+
+			Future<ResponseEntity<String>> add = holders.submit(() -> restTemplate.postForEntity("/add",
+					new Movie("Busy Movie", "Busy Director", 2017), String.class));
+			//waiting for its permit (acquire-timeout 2s) => the transaction has not started yet
+			Thread.sleep(500);
+			assertThat(hikariDataSource.getHikariPoolMXBean().getActiveConnections()).isZero();
+
+			ResponseEntity<String> response = add.get(10, TimeUnit.SECONDS);
+			assertThat(response.getStatusCode()).isEqualTo(HttpStatus.SERVICE_UNAVAILABLE);
+			assertThat(response.getHeaders().getFirst(HttpHeaders.RETRY_AFTER)).isEqualTo("1");
+
+			//background jobs are not requests => they still run, without a permit
+			movieChangeLog.scheduledPoll();
+			movieCountService.scheduledReconcile();
+			assertThat(databaseConcurrencyLimiter.availablePermits()).isZero();
+		} finally {
+			release.countDown();
+			holders.shutdown();
+			holders.awaitTermination(10, TimeUnit.SECONDS);
+		}
+		assertThat(databaseConcurrencyLimiter.availablePermits()).isEqualTo(permits);
+		assertThat(restTemplate.getForObject("/simple?director=Busy Director", String.class)).doesNotContain("Busy Movie");
+	}
+
+	// Test a cache miss of GET /movies/{id} with every db slot taken => 503 + Retry-After, not the cache's wrapper as a 500
+	@Test
+	public void testDatabaseBusyOnMovieCacheMiss() throws Exception {
+		//the add evicts its id => the next GET is a miss
+		Long movieId = createTestMovie("Busy Cached Movie", "Busy Director", 2018);
+		int permits = dbMaxConcurrency;
+		CountDownLatch release = new CountDownLatch(1);
+		CountDownLatch held = new CountDownLatch(permits);
+		ExecutorService holders = Executors.newFixedThreadPool(permits);
+		try {
+			for (int i = 0; i < permits; i++) {
+				holders.submit(() -> databaseConcurrencyLimiter.limit(() -> {
+					held.countDown();
+					try {
+						return release.await(30, TimeUnit.SECONDS);
+					} catch (InterruptedException e) {
+						throw new IllegalStateException(e);
+					}
+				}));
+			}
+			assertThat(held.await(10, TimeUnit.SECONDS)).isTrue();
+
+			ResponseEntity<String> response = restTemplate.getForEntity("/movies/" + movieId, String.class);
+			assertThat(response.getStatusCode()).isEqualTo(HttpStatus.SERVICE_UNAVAILABLE);
+			assertThat(response.getHeaders().getFirst(HttpHeaders.RETRY_AFTER)).isEqualTo("1");
+		} finally {
+			release.countDown();
+			holders.shutdown();
+			holders.awaitTermination(10, TimeUnit.SECONDS);
+		}
+		//nothing was cached for the failed load
+		assertThat(restTemplate.getForObject("/movies/" + movieId, MovieDTO.class).getTitle()).isEqualTo("Busy Cached Movie");
+		restTemplate.delete("/delete/" + movieId);
+	}
+
+	// Test set-based PATCH/DELETE /movies => affected counts, and every cached view of the movies follows
+	@Test
+	public void testBulkUpdateAndDelete() throws Exception {
+		Long first = createTestMovie("Bulk Edit One", "Bulk Director A", 1941);
+		Long second = createTestMovie("Bulk Edit Two", "Bulk Director A", 1942);
+		Long other = createTestMovie("Bulk Edit Three", "Bulk Director A", 1950);
+		//cached before the bulk write
+		String etag = restTemplate.getForEntity("/movies/" + first, MovieDTO.class).getHeaders().getETag();
+		restTemplate.getForEntity("/simple?director=Bulk Director B", String.class);
+
+		mockMvc.perform(patch("/movies").param("director", "Bulk Director A").param("toYear", "1945")
+						.contentType(MediaType.APPLICATION_JSON).content("{\"director\":\"Bulk Director B\"}"))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.updated").value(2));
+
+		ResponseEntity<MovieDTO> patched = restTemplate.getForEntity("/movies/" + first, MovieDTO.class);
+		assertThat(patched.getBody().getDirector()).isEqualTo("Bulk Director B");
+		assertThat(patched.getBody().getTitle()).isEqualTo("Bulk Edit One");
+		assertThat(patched.getHeaders().getETag()).isNotEqualTo(etag);
+		assertThat(restTemplate.getForObject("/simple?director=Bulk Director B", MovieDTO[].class)).hasSize(2);
+		assertThat(restTemplate.getForObject("/movies/search?q=Bulk Director B", String.class)).contains("Bulk Edit Two");
+		assertThat(movieCountService.getCountsPerDirector()).containsEntry("Bulk Director A", 1L)
+				.containsEntry("Bulk Director B", 2L);
+
+		mockMvc.perform(delete("/movies").param("id", first + "," + second + "," + other).param("director", "Bulk Director B"))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.deleted").value(2));
+
+		assertThat(restTemplate.getForEntity("/movies/" + second, String.class).getStatusCode()).isEqualTo(HttpStatus.NOT_FOUND);
+		assertThat(restTemplate.getForObject("/simple?director=Bulk Director B", MovieDTO[].class)).isEmpty();
+		assertThat(movieCountService.getCountsPerDirector()).doesNotContainKey("Bulk Director B");
+		restTemplate.delete("/delete/" + other);
+		assertThat(movieCountService.reconcile()).isTrue();
+	}
+
+	// Test bulk writes that must not happen => no selection (whole catalog), invalid patch, clash with another movie
+	@Test
+	public void testBulkWritesRejected() throws Exception {
+		mockMvc.perform(delete("/movies")).andExpect(status().isBadRequest());
+		mockMvc.perform(patch("/movies").param("year", "1994")
+						.contentType(MediaType.APPLICATION_JSON).content("{\"year\":1800}"))
+				.andExpect(status().isBadRequest());
+
+		Long movieId = createTestMovie("The Shawshank Redemption", "Bulk Clash Director", 1994);
+		mockMvc.perform(patch("/movies").param("id", movieId.toString())
+						.contentType(MediaType.APPLICATION_JSON).content("{\"director\":\"Frank Darabont\"}"))
+				.andExpect(status().isConflict());
+		//rolled back as a whole
+		assertThat(restTemplate.getForObject("/movies/" + movieId, MovieDTO.class).getDirector())
+				.isEqualTo("Bulk Clash Director");
+		restTemplate.delete("/delete/" + movieId);
+	}
+
+	// Test the change feed => a cursor first, then only what changed after it, in order
+	@Test
+	public void testChangeFeed() throws Exception {
+		long cursor = changes("/movies/changes").get("next").asLong();
+		Long movieId = createTestMovie("Changed Movie", "Change Director", 1961);
+		restTemplate.put("/update/" + movieId, new Movie("Changed Movie", "Change Director", 1962));
+		restTemplate.delete("/delete/" + movieId);
+
+		JsonNode page = changes("/movies/changes?since=" + cursor);
+		List<String> types = page.get("changes").findValuesAsText("type");
+		assertThat(types).containsExactly("INSERT", "UPDATE", "DELETE");
+		assertThat(page.get("changes").findValuesAsText("movieId")).containsOnly(movieId.toString());
+		assertThat(page.get("changes").get(1).get("year").asInt()).isEqualTo(1962);
+		long next = page.get("next").asLong();
+		assertThat(next).isEqualTo(page.get("changes").get(2).get("seq").asLong());
+
+		JsonNode firstOnly = changes("/movies/changes?limit=1&since=" + cursor);
+		assertThat(firstOnly.get("hasMore").asBoolean()).isTrue();
+		assertThat(firstOnly.get("changes")).hasSize(1);
+		assertThat(changes("/movies/changes?since=" + next).get("changes")).isEmpty();
+
+		//a cursor the feed never handed out => start over
+		assertThat(restTemplate.getForEntity("/movies/changes?since=" + (next + 1_000_000), String.class).getStatusCode())
+				.isEqualTo(HttpStatus.GONE);
+	}
+
+	private JsonNode changes(String url) throws Exception {
+		return objectMapper.readTree(restTemplate.getForObject(url, String.class));
+	}
+
+	// Test a second instance on the same database => both record changes, each one's feed sees the other's,
+	// a gap in the seqs (a transaction still open elsewhere) holds the feed back until visibility-delay
+	@Test
+	public void testChangeLogOfAnotherInstance() throws Exception {
+		MovieChangeLog other = new MovieChangeLog(movieChangeRepository, entityManager, databaseConcurrencyLimiter, Duration.ofDays(7), Duration.ofMillis(500));
+		TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+		MovieChange change = MovieChange.deleted(1);
+		transaction.executeWithoutResult(status -> other.record(change));
+		assertThat(change.getSeq()).isGreaterThan(movieChangeLog.watermark());
+		//a cursor the other instance may hand out already => no 410
+		movieChangeLog.checkCursor(change.getSeq());
+		movieChangeLog.poll();
+		assertThat(movieChangeLog.watermark()).isGreaterThanOrEqualTo(change.getSeq());
+
+		//seq taken by a transaction that is still open on a third instance
+		long gap = jdbcTemplate.queryForObject("SELECT NEXT VALUE FOR movie_changes_seq", Long.class);
+		MovieChange after = MovieChange.deleted(2);
+		transaction.executeWithoutResult(status -> other.record(after));
+		assertThat(after.getSeq()).isGreaterThan(gap);
+		other.poll();
+		assertThat(other.watermark()).isLessThan(gap);
+		Thread.sleep(600);
+		other.poll();
+		assertThat(other.watermark()).isGreaterThanOrEqualTo(after.getSeq());
+
+		//the default delay is longer => later, but the same changes
+		long deadline = System.currentTimeMillis() + 10_000;
+		while (movieChangeLog.watermark() < after.getSeq() && System.currentTimeMillis() < deadline) {
+			Thread.sleep(50);
+			movieChangeLog.poll();
+		}
+		assertThat(movieChangeLog.changesSince(change.getSeq(), 10).changes())
+				.extracting(MovieChange::getSeq).containsExactly(after.getSeq());
+	}
+
+	// Test the event stream => a change made after subscribing arrives as one compact json event
+	@Test
+	public void testChangeStream() throws Exception {
+		long cursor = movieChangeLog.watermark();
+		HttpClient client = HttpClient.newHttpClient();
+		HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/movies/changes/stream?since=" + cursor))
+				.header("Accept", "text/event-stream").build();
+		HttpResponse<InputStream> response = client.send(request, HttpResponse.BodyHandlers.ofInputStream());
+		assertThat(response.headers().firstValue("Content-Type").orElse("")).startsWith("text/event-stream");
+
+		Long movieId = createTestMovie("Streamed Movie", "Stream Director", 1971);
+		try (BufferedReader lines = new BufferedReader(new InputStreamReader(response.body(), StandardCharsets.UTF_8))) {
+			List<String> event = new ArrayList<>();
+			String line;
+			while ((line = lines.readLine()) != null && !(line.isEmpty() && !event.isEmpty())) {
+				if (!line.isEmpty() && !line.startsWith(":")) {
+					event.add(line);
+				}
+			}
+			assertThat(event).contains("event:INSERT").anyMatch(l -> l.startsWith("id:"));
+			assertThat(event).filteredOn(l -> l.startsWith("data:")).singleElement()
+					.satisfies(data -> assertThat(data).contains("\"movieId\":" + movieId).contains("Streamed Movie"));
+		}
+		restTemplate.delete("/delete/" + movieId);
+	}
+
+	// Test a subscriber that stops reading => its buffer fills up, it is evicted right away instead of slowing the publisher
+	@Test
+	public void testSlowChangeSubscriberEvicted() throws Exception {
+		MovieChangeStream stream = new MovieChangeStream(movieChangeLog, springObjectMapper, new SimpleMeterRegistry(),
+				2, 10, Duration.ofMinutes(1));
+		CountDownLatch stuck = new CountDownLatch(1);
+		List<String> sent = new CopyOnWriteArrayList<>();
+		SseEmitter slowClient = new SseEmitter() {
+			@Override
+			public void send(SseEventBuilder builder) throws IOException {
+				StringBuilder text = new StringBuilder();
+				builder.build().forEach(part -> text.append(part.getData()));
+				sent.add(text.toString());
+				try {
+					stuck.await();
+				} catch (InterruptedException e) {
+					throw new IOException(e);
+				}
+			}
+		};
+		long seq = movieChangeLog.watermark();
+		stream.subscribe(slowClient, seq);
+		for (int i = 1; i <= 5; i++) {
+			MovieChange change = MovieChange.deleted(i);
+			change.setSeq(seq + i, Instant.now());
+			stream.publish(change);
+		}
+		//dropped while its sender is still stuck in a send
+		assertThat(stream.subscribers()).isZero();
+		stuck.countDown();
+
+		//its sender still tells it once the stuck send returns
+		long deadline = System.currentTimeMillis() + 10_000;
+		while ((sent.isEmpty() || !sent.get(sent.size() - 1).contains("event:evicted"))
+				&& System.currentTimeMillis() < deadline) {
+			Thread.sleep(10);
+		}
+		assertThat(sent.get(sent.size() - 1)).contains("event:evicted");
+		assertThat(stream.subscribers()).isZero();
+	}
+
 	// Test for getting movies count
 	@Test
 	public void testGetMoviesCount() throws Exception {
@@ -86,6 +782,80 @@ class MovieApiApplicationTests {
 		assertThat(count).isNotNull();
 	}
 
+	//the in-memory counts follow add/update/delete and agree with the table when reconciled
+	@Test
+	public void testCountsFollowWrites() throws Exception {
+		long before = movieCountService.getMoviesCount();
+		Long movieId = createTestMovie("Counted Movie", "Count Director A", 1931);
+		assertThat(movieCountService.getMoviesCount()).isEqualTo(before + 1);
+
+		//paged by name => starts after "after", the next page starts after the last director of this one
+		ResponseEntity<String> directorPage = restTemplate.getForEntity("/count/directors?limit=1&after=Count Director", String.class);
+		Map<String, Long> directors = objectMapper.readValue(directorPage.getBody(), new TypeReference<>() {});
+		assertThat(directors).containsExactly(Map.entry("Count Director A", 1L));
+		assertThat(directorPage.getHeaders().getFirst(HttpHeaders.LINK)).contains("after=Count%20Director%20A", "rel=\"next\"");
+		assertThat(restTemplate.getForEntity("/count/directors?limit=1001", String.class).getStatusCode())
+				.isEqualTo(HttpStatus.BAD_REQUEST);
+		Map<String, Long> years = objectMapper.readValue(
+				restTemplate.getForObject("/count/years", String.class), new TypeReference<>() {});
+		assertThat(years).containsEntry("1931", 1L);
+
+		restTemplate.put("/update/" + movieId, new Movie("Counted Movie", "Count Director B", 1932));
+		assertThat(movieCountService.getCountsPerDirector()).doesNotContainKey("Count Director A")
+				.containsEntry("Count Director B", 1L);
+		assertThat(movieCountService.getCountsPerYear()).doesNotContainKey(1931).containsEntry(1932, 1L);
+
+		restTemplate.delete("/delete/" + movieId);
+		assertThat(movieCountService.getMoviesCount()).isEqualTo(before);
+		assertThat(movieCountService.getCountsPerDirector()).doesNotContainKey("Count Director B");
+
+		//no write in flight => the reconciliation runs and finds nothing to correct
+		assertThat(movieCountService.reconcile()).isTrue();
+		assertThat(movieCountService.getMoviesCount()).isEqualTo(before);
+	}
+
+	// Test the seed => done before the web server starts, a fresh copy of the counts matches the table
+	@Test
+	public void testCountsSeededBeforeWebServer() {
+		assertThat(movieCountService.getPhase())
+				.isLessThan(applicationContext.getBean("webServerStartStop", SmartLifecycle.class).getPhase());
+
+		MovieCounts fresh = new MovieCounts();
+		MovieCountService seeded = new MovieCountService(movieRepository, fresh, transactionManager, databaseConcurrencyLimiter);
+		seeded.start();
+		assertThat(seeded.isRunning()).isTrue();
+		assertThat(fresh.total()).isEqualTo(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM movies", Long.class));
+	}
+
+	// Test a reconciliation racing with a write => skipped while the write is pending, the movie is counted once
+	@Test
+	public void testCountReconcileSkipsPendingWrites() throws Exception {
+		long before = movieCountService.getMoviesCount();
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		try {
+			new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+				jdbcTemplate.update("INSERT INTO movies (title, director, \"year\") VALUES ('Pending Count', 'Pending Director', 1950)");
+				movieCounts.added("Pending Director", 1950);
+				//another thread => its own transaction, it must not reset the counts while this one is open
+				try {
+					assertThat(executor.submit(movieCountService::reconcile).get(10, TimeUnit.SECONDS)).isFalse();
+				} catch (Exception e) {
+					throw new IllegalStateException(e);
+				}
+				assertThat(movieCountService.getMoviesCount()).isEqualTo(before);
+			});
+		} finally {
+			executor.shutdown();
+		}
+		assertThat(movieCountService.getMoviesCount()).isEqualTo(before + 1);
+		assertThat(movieCountService.reconcile()).isTrue();
+		assertThat(movieCountService.getMoviesCount()).isEqualTo(before + 1);
+
+		jdbcTemplate.update("DELETE FROM movies WHERE title = 'Pending Count'");
+		assertThat(movieCountService.reconcile()).isTrue();
+		assertThat(movieCountService.getMoviesCount()).isEqualTo(before);
+	}
+
 	// Test adding a movie successfully
 	@Test
 	public void testAddMovieSuccess() throws Exception {
@@ -119,6 +889,190 @@ class MovieApiApplicationTests {
 		assertThat(response.getBody()).contains(expectedErrorMessage);
 	}
 
+	// Test only the movie unique key is a 409 => any other integrity violation is a 500, not the client's fault
+	@Test
+	public void testOtherIntegrityViolationIsServerError() {
+		GlobalExceptionHandler handler = new GlobalExceptionHandler();
+		SQLException sql = new SQLException("NULL not allowed for column \"TITLE\"", "23502");
+
+		ResponseEntity<Object> notNull = handler.handleDataIntegrityViolation(new DataIntegrityViolationException("not null",
+				new ConstraintViolationException("not null", sql, "insert into movies", null)));
+		assertThat(notNull.getStatusCode()).isEqualTo(HttpStatus.INTERNAL_SERVER_ERROR);
+
+		ResponseEntity<Object> otherKey = handler.handleDataIntegrityViolation(new DataIntegrityViolationException("duplicate",
+				new ConstraintViolationException("duplicate", sql, "insert into movie_changes", "PUBLIC.PRIMARY_KEY_8")));
+		assertThat(otherKey.getStatusCode()).isEqualTo(HttpStatus.INTERNAL_SERVER_ERROR);
+
+		ResponseEntity<Object> duplicate = handler.handleDataIntegrityViolation(new DataIntegrityViolationException("duplicate",
+				new ConstraintViolationException("duplicate", sql, "insert into movies",
+						"PUBLIC.UK_MOVIES_TITLE_DIRECTOR_YEAR_INDEX_8")));
+		assertThat(duplicate.getStatusCode()).isEqualTo(HttpStatus.CONFLICT);
+	}
+
+	// Test parallel identical posts => the unique index lets exactly one through
+	@Test
+	public void testConcurrentDuplicateAdds() throws Exception {
+		int writers = 8;
+		ExecutorService executor = Executors.newFixedThreadPool(writers);
+		CountDownLatch start = new CountDownLatch(1);
+		try {
+			List<Future<HttpStatusCode>> statuses = new ArrayList<>();
+			for (int i = 0; i < writers; i++) {
+				statuses.add(executor.submit(() -> {
+					start.await();
+					Movie movie = new Movie("Race Movie", "Race Director", 2020);
+					return restTemplate.postForEntity("/add", movie, String.class).getStatusCode();
+				}));
+			}
+			start.countDown();
+
+			int created = 0;
+			int conflicts = 0;
+			for (Future<HttpStatusCode> status : statuses) {
+				HttpStatusCode code = status.get(30, TimeUnit.SECONDS);
+				if (code.equals(HttpStatus.CREATED)) {
+					created++;
+				} else if (code.equals(HttpStatus.CONFLICT)) {
+					conflicts++;
+				}
+			}
+			assertThat(created).isEqualTo(1);
+			assertThat(conflicts).isEqualTo(writers - 1);
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	// Test async add => 202 at once, the ticket reaches COMMITTED and the movie is then readable
+	@Test
+	public void testAddMovieAsync() {
+		ResponseEntity<IngestStatus> response = postAsync(new Movie("Queued Movie", "Queue Director", 2019));
+
+		assertThat(response.getStatusCode()).isEqualTo(HttpStatus.ACCEPTED);
+		assertThat(response.getHeaders().getFirst("Preference-Applied")).isEqualTo("respond-async");
+		assertThat(response.getBody().getStatus()).isEqualTo(IngestStatus.Status.QUEUED);
+
+		IngestStatus status = awaitIngest(response.getHeaders().getLocation());
+		assertThat(status.getStatus()).isEqualTo(IngestStatus.Status.COMMITTED);
+		ResponseEntity<MovieDTO> movie = restTemplate.getForEntity("/movies/" + status.getId(), MovieDTO.class);
+		assertThat(movie.getBody().getTitle()).isEqualTo("Queued Movie");
+	}
+
+	// Test async duplicates => accepted with 202, the conflict shows up on the ticket; invalid input is still a 400
+	@Test
+	public void testAddMovieAsyncConflictAndInvalid() {
+		ResponseEntity<IngestStatus> duplicate = postAsync(new Movie("The Godfather", "Francis Ford Coppola", 1972));
+		assertThat(duplicate.getStatusCode()).isEqualTo(HttpStatus.ACCEPTED);
+		assertThat(awaitIngest(duplicate.getHeaders().getLocation()).getStatus()).isEqualTo(IngestStatus.Status.CONFLICT);
+
+		HttpHeaders headers = new HttpHeaders();
+		headers.set("Prefer", "respond-async");
+		ResponseEntity<String> invalid = restTemplate.postForEntity("/add",
+				new HttpEntity<>(Map.of("title", "No Director"), headers), String.class);
+		assertThat(invalid.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
+
+		assertThat(restTemplate.getForEntity("/ingest/" + UUID.randomUUID(), String.class).getStatusCode())
+				.isEqualTo(HttpStatus.NOT_FOUND);
+	}
+
+	// Test backpressure => a full queue refuses with 429 instead of growing
+	@Test
+	public void testIngestQueueFull() {
+		//never started => nothing drains the queue
+		//no retention and one status at most => queued tickets must survive a writer lagging behind both
+		MovieIngestService unstarted = new MovieIngestService(movieImportService, new SimpleMeterRegistry(),
+				2, 500, Duration.ofMillis(5), Duration.ZERO, 1);
+		IngestStatus first = unstarted.submit(new Movie("Full 1", "Full Director", 2001));
+		IngestStatus second = unstarted.submit(new Movie("Full 2", "Full Director", 2002));
+
+		assertThatThrownBy(() -> unstarted.submit(new Movie("Full 3", "Full Director", 2003)))
+				.isInstanceOf(IngestQueueFullException.class);
+		assertThat(first.getTicket()).isNotEqualTo(second.getTicket());
+		assertThat(unstarted.getStatus(first.getTicket()).get().getStatus()).isEqualTo(IngestStatus.Status.QUEUED);
+		assertThat(unstarted.getStatus(second.getTicket()).get().getStatus()).isEqualTo(IngestStatus.Status.QUEUED);
+	}
+
+	// Test graceful shutdown => everything accepted before stop() is committed, nothing is accepted after it
+	@Test
+	public void testIngestDrainedOnStop() {
+		List<URI> tickets = new ArrayList<>();
+		try {
+			for (int i = 0; i < 20; i++) {
+				tickets.add(postAsync(new Movie("Drained " + i, "Drain Director", 2000 + i)).getHeaders().getLocation());
+			}
+			movieIngestService.stop();
+
+			for (URI ticket : tickets) {
+				IngestStatus status = restTemplate.getForObject(ticket, IngestStatus.class);
+				assertThat(status.getStatus()).isEqualTo(IngestStatus.Status.COMMITTED);
+			}
+			HttpHeaders headers = new HttpHeaders();
+			headers.set("Prefer", "respond-async");
+			ResponseEntity<String> tooLate = restTemplate.postForEntity("/add",
+					new HttpEntity<>(new Movie("Too Late", "Drain Director", 2020), headers), String.class);
+			assertThat(tooLate.getStatusCode()).isEqualTo(HttpStatus.SERVICE_UNAVAILABLE);
+		} finally {
+			movieIngestService.start();
+		}
+	}
+
+	// Test an Error escaping a batch => that batch is FAILED, the writer keeps committing the next ones
+	@Test
+	public void testIngestWriterSurvivesError() {
+		Movie broken = new Movie("Broken Ingest", "Broken Director", 2001) {
+			@Override
+			public String getTitle() {
+				throw new AssertionError("broken movie");
+			}
+		};
+		IngestStatus failed = awaitIngest(movieIngestService.submit(broken).getTicket());
+		assertThat(failed.getStatus()).isEqualTo(IngestStatus.Status.FAILED);
+
+		IngestStatus next = awaitIngest(movieIngestService.submit(new Movie("After Broken", "Broken Director", 2002)).getTicket());
+		assertThat(next.getStatus()).isEqualTo(IngestStatus.Status.COMMITTED);
+		restTemplate.delete("/delete/" + next.getId());
+	}
+
+	private IngestStatus awaitIngest(UUID ticket) {
+		long deadline = System.currentTimeMillis() + 10_000;
+		IngestStatus status = movieIngestService.getStatus(ticket).get();
+		while (status.getStatus() == IngestStatus.Status.QUEUED && System.currentTimeMillis() < deadline) {
+			Thread.onSpinWait();
+			status = movieIngestService.getStatus(ticket).get();
+		}
+		return status;
+	}
+
+	private ResponseEntity<IngestStatus> postAsync(Movie movie) {
+		HttpHeaders headers = new HttpHeaders();
+		headers.set("Prefer", "respond-async");
+		return restTemplate.postForEntity("/add", new HttpEntity<>(movie, headers), IngestStatus.class);
+	}
+
+	private IngestStatus awaitIngest(URI ticket) {
+		long deadline = System.currentTimeMillis() + 10_000;
+		IngestStatus status = restTemplate.getForObject(ticket, IngestStatus.class);
+		while (status.getStatus() == IngestStatus.Status.QUEUED && System.currentTimeMillis() < deadline) {
+			Thread.onSpinWait();
+			status = restTemplate.getForObject(ticket, IngestStatus.class);
+		}
+		return status;
+	}
+
+	// Test updating a movie into the values of another one
+	@Test
+	public void testUpdateMovieIntoDuplicate() {
+		Long movieId = createTestMovie("Soon Duplicate", "Dup Director", 2005);
+
+		Movie duplicate = new Movie("The Dark Knight", "Christopher Nolan", 2008);
+		HttpHeaders headers = new HttpHeaders();
+		headers.setContentType(MediaType.APPLICATION_JSON);
+		ResponseEntity<String> response = restTemplate.exchange("/update/" + movieId, HttpMethod.PUT,
+				new HttpEntity<>(duplicate, headers), String.class);
+
+		assertThat(response.getStatusCode()).isEqualTo(HttpStatus.CONFLICT);
+	}
+
 	//test adding incomplete movie
 	@Test
 	public void testAddMovieWithMissingFields() {
@@ -178,6 +1132,70 @@ class MovieApiApplicationTests {
 
 	}
 
+	//conditional GET => 304 while the movie is unchanged, a new ETag once it is updated
+	@Test
+	public void testConditionalGetMovie() {
+		Long movieId = createTestMovie("ETag Movie", "ETag Director", 2003);
+
+		ResponseEntity<String> first = restTemplate.getForEntity("/movies/" + movieId, String.class);
+		assertThat(first.getStatusCode()).isEqualTo(HttpStatus.OK);
+		String etag = first.getHeaders().getETag();
+		assertThat(etag).isNotNull();
+		assertThat(first.getHeaders().getLastModified()).isPositive();
+
+		HttpHeaders ifNoneMatch = new HttpHeaders();
+		ifNoneMatch.setIfNoneMatch(etag);
+		ResponseEntity<String> notModified = restTemplate.exchange("/movies/" + movieId, HttpMethod.GET,
+				new HttpEntity<>(ifNoneMatch), String.class);
+		assertThat(notModified.getStatusCode()).isEqualTo(HttpStatus.NOT_MODIFIED);
+		assertThat(notModified.getBody()).isNull();
+
+		HttpHeaders ifModifiedSince = new HttpHeaders();
+		ifModifiedSince.setIfModifiedSince(first.getHeaders().getLastModified());
+		assertThat(restTemplate.exchange("/movies/" + movieId, HttpMethod.GET,
+				new HttpEntity<>(ifModifiedSince), String.class).getStatusCode()).isEqualTo(HttpStatus.NOT_MODIFIED);
+
+		restTemplate.put("/update/" + movieId, new Movie("ETag Movie", "ETag Director", 2004));
+		ResponseEntity<String> changed = restTemplate.exchange("/movies/" + movieId, HttpMethod.GET,
+				new HttpEntity<>(ifNoneMatch), String.class);
+		assertThat(changed.getStatusCode()).isEqualTo(HttpStatus.OK);
+		assertThat(changed.getHeaders().getETag()).isNotEqualTo(etag);
+	}
+
+	@Test
+	public void testConditionalGetMoviesPage() {
+		ResponseEntity<String> first = restTemplate.getForEntity("/movies?limit=5", String.class);
+		String etag = first.getHeaders().getETag();
+		assertThat(etag).isNotNull();
+
+		HttpHeaders headers = new HttpHeaders();
+		headers.setIfNoneMatch(etag);
+		ResponseEntity<String> second = restTemplate.exchange("/movies?limit=5", HttpMethod.GET,
+				new HttpEntity<>(headers), String.class);
+		assertThat(second.getStatusCode()).isEqualTo(HttpStatus.NOT_MODIFIED);
+	}
+
+	//If-Match with an outdated ETag => 412 and the movie keeps the other writer's values
+	@Test
+	public void testUpdateWithStaleIfMatch() {
+		Long movieId = createTestMovie("If-Match Movie", "If-Match Director", 2001);
+		String etag = restTemplate.getForEntity("/movies/" + movieId, String.class).getHeaders().getETag();
+
+		HttpHeaders headers = new HttpHeaders();
+		headers.setContentType(MediaType.APPLICATION_JSON);
+		headers.setIfMatch(etag);
+		ResponseEntity<Movie> accepted = restTemplate.exchange("/update/" + movieId, HttpMethod.PUT,
+				new HttpEntity<>(new Movie("If-Match Movie", "If-Match Director", 2002), headers), Movie.class);
+		assertThat(accepted.getStatusCode()).isEqualTo(HttpStatus.OK);
+		assertThat(accepted.getHeaders().getETag()).isNotEqualTo(etag);
+
+		//second writer still holds the first ETag
+		ResponseEntity<String> rejected = restTemplate.exchange("/update/" + movieId, HttpMethod.PUT,
+				new HttpEntity<>(new Movie("If-Match Movie", "If-Match Director", 1999), headers), String.class);
+		assertThat(rejected.getStatusCode()).isEqualTo(HttpStatus.PRECONDITION_FAILED);
+		assertThat(restTemplate.getForObject("/movies/" + movieId, Movie.class).getYear()).isEqualTo(2002);
+	}
+
 	// Test deleting a movie
 	private Long createTestMovie(String title, String director, int year) {
 		Movie movie = new Movie(title, director, year);
@@ -0,0 +1,69 @@
+package com.example.movieapi;
+
+import com.example.movieapi.model.Movie;
+import com.example.movieapi.repository.MovieRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+//"prod" profile => file database, schema.sql runs again on every start without failing, no sample data is seeded
+class ProdProfileTests {
+
+	@TempDir
+	Path dataDir;
+
+	@Test
+	public void testDataSurvivesRestart() {
+		long movieId;
+		long count;
+		try (ConfigurableApplicationContext context = start()) {
+			MovieRepository repository = context.getBean(MovieRepository.class);
+			//no data.sql => an empty catalog to begin with
+			assertThat(repository.count()).isZero();
+			movieId = repository.saveAndFlush(new Movie("Durable Movie", "Durable Director", 2010)).getId();
+			count = repository.count();
+		}
+
+		try (ConfigurableApplicationContext context = start()) {
+			MovieRepository repository = context.getBean(MovieRepository.class);
+			assertThat(repository.findById(movieId)).isPresent();
+			assertThat(repository.count()).isEqualTo(count);
+		}
+	}
+
+	// Test deletes and edits are not undone by the next start
+	@Test
+	public void testDeleteAndUpdateSurviveRestart() {
+		long deletedId;
+		long updatedId;
+		try (ConfigurableApplicationContext context = start()) {
+			MovieRepository repository = context.getBean(MovieRepository.class);
+			deletedId = repository.saveAndFlush(new Movie("The Godfather", "Francis Ford Coppola", 1972)).getId();
+			Movie updated = repository.saveAndFlush(new Movie("The Dark Knight", "Christopher Nolan", 2008));
+			updatedId = updated.getId();
+			repository.deleteById(deletedId);
+			updated.setYear(2009);
+			repository.saveAndFlush(updated);
+		}
+
+		try (ConfigurableApplicationContext context = start()) {
+			MovieRepository repository = context.getBean(MovieRepository.class);
+			assertThat(repository.findById(deletedId)).isEmpty();
+			assertThat(repository.findById(updatedId).orElseThrow().getYear()).isEqualTo(2009);
+			//a sample movie with the old values is not merged back in
+			assertThat(repository.count()).isEqualTo(1);
+		}
+	}
+
+	private ConfigurableApplicationContext start() {
+		return new SpringApplicationBuilder(MovieApiApplication.class).run(
+				"--spring.profiles.active=prod",
+				"--movieapi.db.path=" + dataDir.resolve("movies"),
+				"--server.port=0");
+	}
+}
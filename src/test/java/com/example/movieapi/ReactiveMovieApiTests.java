@@ -0,0 +1,96 @@
+package com.example.movieapi;
+
+import com.example.movieapi.dto.MovieDTO;
+import com.example.movieapi.model.Movie;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+//same api on the "reactive" profile (WebFlux + R2DBC)
+//own database name => schema.sql runs on a fresh db, not on the one of MovieApiApplicationTests
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+		"spring.datasource.url=jdbc:h2:mem:reactive_movies;DB_CLOSE_DELAY=-1",
+		"movieapi.r2dbc.url=r2dbc:pool:h2:mem:///reactive_movies?options=DB_CLOSE_DELAY=-1"
+})
+@ActiveProfiles("reactive")
+class ReactiveMovieApiTests {
+
+	@Autowired
+	private WebTestClient webTestClient;
+
+	@Test
+	public void testGetAllMoviesSimple() {
+		List<MovieDTO> movies = webTestClient.get().uri("/simple")
+				.exchange()
+				.expectStatus().isOk()
+				.expectBodyList(MovieDTO.class)
+				.returnResult().getResponseBody();
+		assertThat(movies).isNotEmpty(); //data.sql rows, read through r2dbc
+	}
+
+	@Test
+	public void testStreamMoviesAsNdjsonWithKeyset() {
+		List<MovieDTO> firstPage = webTestClient.get().uri("/movies?limit=1")
+				.accept(MediaType.APPLICATION_NDJSON)
+				.exchange()
+				.expectStatus().isOk()
+				.expectHeader().contentTypeCompatibleWith(MediaType.APPLICATION_NDJSON)
+				.expectBodyList(MovieDTO.class)
+				.returnResult().getResponseBody();
+		assertThat(firstPage).hasSize(1);
+		Long firstId = firstPage.get(0).getId();
+
+		List<MovieDTO> nextPage = webTestClient.get().uri("/simple?limit=1&after=" + firstId)
+				.exchange()
+				.expectStatus().isOk()
+				.expectBodyList(MovieDTO.class)
+				.returnResult().getResponseBody();
+		assertThat(nextPage).hasSize(1);
+		assertThat(nextPage.get(0).getId()).isGreaterThan(firstId);
+	}
+
+	@Test
+	public void testAddUpdateDeleteMovie() {
+		Movie movie = new Movie();
+		movie.setTitle("Reactive Movie");
+		movie.setDirector("Reactive Director");
+		movie.setYear(2024);
+
+		Movie created = webTestClient.post().uri("/add")
+				.bodyValue(movie)
+				.exchange()
+				.expectStatus().isCreated()
+				.expectBody(Movie.class)
+				.returnResult().getResponseBody();
+		assertThat(created.getId()).isNotNull();
+
+		//same unique index as the servlet stack
+		webTestClient.post().uri("/add").bodyValue(movie)
+				.exchange()
+				.expectStatus().isEqualTo(HttpStatus.CONFLICT);
+
+		movie.setYear(2025);
+		webTestClient.put().uri("/update/" + created.getId()).bodyValue(movie)
+				.exchange()
+				.expectStatus().isOk();
+		webTestClient.get().uri("/movies/" + created.getId())
+				.exchange()
+				.expectStatus().isOk()
+				.expectBody().jsonPath("$.year").isEqualTo(2025);
+
+		webTestClient.delete().uri("/delete/" + created.getId())
+				.exchange()
+				.expectStatus().isNoContent();
+		webTestClient.get().uri("/movies/" + created.getId())
+				.exchange()
+				.expectStatus().isNotFound();
+	}
+}
@@ -0,0 +1,147 @@
+package com.example.movieapi;
+
+import com.example.movieapi.cache.CatalogVersion;
+import com.example.movieapi.service.MovieService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.cache.CacheManager;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+
+import javax.sql.DataSource;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+//two in-memory h2 databases, "primary" and "replica" => the replica only sees the writes once replicate() copied them,
+//so a lagging replica is simply one that was not replicated yet
+//payload cache off => /simple is read from the database on every request
+//the clients' api keys are known => each is its own client for the read-your-writes pinning
+//lag-tolerance long enough for the pinned reads right after a write, short enough to wait for the catalog to settle
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+		"spring.datasource.url=jdbc:h2:mem:primary;DB_CLOSE_DELAY=-1",
+		"movieapi.replica.url=jdbc:h2:mem:replica;DB_CLOSE_DELAY=-1",
+		"movieapi.replica.lag-tolerance=5s",
+		"movieapi.payload-cache.max-size=0",
+		"movieapi.api-keys=reader,writer,first,second"})
+class ReplicaRoutingTests {
+
+	//a row only the replica has => a 200 for it can only come from the replica
+	private static final long REPLICA_ONLY_ID = 999_999_999L;
+
+	@Autowired
+	private TestRestTemplate restTemplate;
+
+	@Autowired
+	@Qualifier("primaryDataSource")
+	private DataSource primary;
+
+	@Autowired
+	@Qualifier("replicaDataSource")
+	private DataSource replica;
+
+	@Autowired
+	private CatalogVersion catalogVersion;
+
+	@Autowired
+	private CacheManager cacheManager;
+
+	@BeforeEach
+	public void replicate() {
+		//replication stand-in => same schema, then a full copy of the movies
+		new ResourceDatabasePopulator(new ClassPathResource("schema.sql")).execute(replica);
+		JdbcTemplate source = new JdbcTemplate(primary);
+		JdbcTemplate target = new JdbcTemplate(replica);
+		List<Object[]> rows = source.query("SELECT id, title, director, \"year\", version, updated_at FROM movies",
+				(rs, rowNum) -> new Object[]{rs.getLong(1), rs.getString(2), rs.getString(3), rs.getInt(4),
+						rs.getLong(5), rs.getObject(6)});
+		target.update("DELETE FROM movies");
+		target.batchUpdate("INSERT INTO movies (id, title, director, \"year\", version, updated_at) VALUES (?, ?, ?, ?, ?, ?)",
+				rows);
+	}
+
+	// Test reads served by the replica, the writer pinned to the primary, the others catching up on replication
+	@Test
+	public void testReadsRoutedToReplica() {
+		String page = "/simple?director=Replica Director";
+		assertThat(get(page, "writer").getBody()).doesNotContain("Replicated Movie");
+
+		ResponseEntity<Map> created = restTemplate.exchange("/add", HttpMethod.POST,
+				json("{\"title\":\"Replicated Movie\",\"director\":\"Replica Director\",\"year\":2020}", "writer"), Map.class);
+		assertThat(created.getStatusCode()).isEqualTo(HttpStatus.CREATED);
+
+		//read-your-writes for the writer, the replica has not seen the movie yet
+		assertThat(get(page, "writer").getBody()).contains("Replicated Movie");
+		assertThat(get(page, "reader").getBody()).doesNotContain("Replicated Movie");
+		assertThat(new JdbcTemplate(replica).queryForObject(
+				"SELECT COUNT(*) FROM movies WHERE title = 'Replicated Movie'", Long.class)).isZero();
+
+		replicate();
+		assertThat(get(page, "reader").getBody()).contains("Replicated Movie");
+
+		assertThat(restTemplate.getForEntity("/actuator/metrics/movies.datasource.connections?tag=route:replica",
+				String.class).getStatusCode()).isEqualTo(HttpStatus.OK);
+		assertThat(restTemplate.getForEntity("/actuator/metrics/movies.replica.pinned_reads",
+				String.class).getStatusCode()).isEqualTo(HttpStatus.OK);
+	}
+
+	// Test a write request reading on the primary => a movie the replica does not have yet can be updated
+	@Test
+	public void testWriteRequestOnPrimary() {
+		ResponseEntity<Map> created = restTemplate.exchange("/add", HttpMethod.POST,
+				json("{\"title\":\"Fresh Movie\",\"director\":\"Fresh Director\",\"year\":2021}", "first"), Map.class);
+		Number id = (Number) created.getBody().get("id");
+
+		//another client, nothing replicated => the existence and version check still finds the row
+		ResponseEntity<String> updated = restTemplate.exchange("/update/" + id, HttpMethod.PUT,
+				json("{\"title\":\"Fresh Movie\",\"director\":\"Fresh Director\",\"year\":2022}", "second"), String.class);
+		assertThat(updated.getStatusCode()).isEqualTo(HttpStatus.OK);
+		assertThat(get("/simple?director=Fresh Director", "second").getBody()).contains("2022");
+	}
+
+	// Test a GET /movies/{id} cache miss read on the replica, and on the primary while the replica may lag a write
+	@Test
+	public void testMovieByIdMissOnReplica() throws InterruptedException {
+		new JdbcTemplate(replica).update("INSERT INTO movies (id, title, director, \"year\") VALUES (?, ?, ?, ?)",
+				REPLICA_ONLY_ID, "Replica Only", "Replica Director", 2019);
+		//the start and earlier tests count as writes => wait until the replica is trusted again
+		while (catalogVersion.replicaMayLag()) {
+			Thread.sleep(50);
+		}
+		cacheManager.getCache(MovieService.MOVIE_CACHE).clear();
+		ResponseEntity<String> movie = get("/movies/" + REPLICA_ONLY_ID, "reader");
+		assertThat(movie.getStatusCode()).isEqualTo(HttpStatus.OK);
+		assertThat(movie.getBody()).contains("Replica Only");
+
+		//any write => the next misses are filled from the primary, which does not have the row
+		restTemplate.exchange("/add", HttpMethod.POST,
+				json("{\"title\":\"Lag Movie\",\"director\":\"Lag Director\",\"year\":2020}", "writer"), Map.class);
+		cacheManager.getCache(MovieService.MOVIE_CACHE).clear();
+		assertThat(get("/movies/" + REPLICA_ONLY_ID, "reader").getStatusCode()).isEqualTo(HttpStatus.NOT_FOUND);
+	}
+
+	private ResponseEntity<String> get(String path, String client) {
+		HttpHeaders headers = new HttpHeaders();
+		headers.set("X-API-Key", client);
+		return restTemplate.exchange(path, HttpMethod.GET, new HttpEntity<>(headers), String.class);
+	}
+
+	private static HttpEntity<String> json(String body, String client) {
+		HttpHeaders headers = new HttpHeaders();
+		headers.setContentType(MediaType.APPLICATION_JSON);
+		headers.set("X-API-Key", client);
+		return new HttpEntity<>(body, headers);
+	}
+}
@@ -0,0 +1,121 @@
+package com.example.movieapi;
+
+import com.example.movieapi.limit.AdaptiveConcurrencyLimit;
+import com.example.movieapi.limit.ClientRateLimiter;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+//RequestLimitFilter with a tiny bucket (1 token/s, burst 5) => a few requests are enough to reach the limit
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+		"spring.datasource.url=jdbc:h2:mem:limits",
+		"movieapi.rate-limit.rate=1",
+		"movieapi.rate-limit.burst=5",
+		"movieapi.api-keys=client-a,client-b"})
+class RequestLimitTests {
+
+	private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+	@Autowired
+	private TestRestTemplate restTemplate;
+
+	// Test one client over its budget => 429 with Retry-After, other clients and actuator unaffected
+	@Test
+	public void testClientRateLimited() {
+		//a page of 100 costs 2 tokens => the third one does not fit into 5
+		assertThat(get("/simple", "client-a").getStatusCode()).isEqualTo(HttpStatus.OK);
+		assertThat(get("/simple", "client-a").getStatusCode()).isEqualTo(HttpStatus.OK);
+		ResponseEntity<String> limited = get("/simple", "client-a");
+		assertThat(limited.getStatusCode()).isEqualTo(HttpStatus.TOO_MANY_REQUESTS);
+		assertThat(limited.getHeaders().getFirst(HttpHeaders.RETRY_AFTER)).isEqualTo("1");
+		assertThat(limited.getBody()).contains("Rate limit exceeded");
+
+		//a single movie costs 1 => still fits
+		assertThat(get("/movies/1", "client-a").getStatusCode()).isEqualTo(HttpStatus.OK);
+		assertThat(get("/simple", "client-b").getStatusCode()).isEqualTo(HttpStatus.OK);
+		assertThat(restTemplate.getForEntity("/actuator/metrics/movies.requests.rejected?tag=reason:rate_limit",
+				String.class).getStatusCode()).isEqualTo(HttpStatus.OK);
+	}
+
+	// Test made-up api keys => counted against the address, not a fresh bucket per key
+	@Test
+	public void testUnknownApiKeyCountsPerAddress() {
+		assertThat(get("/simple", "made-up-1").getStatusCode()).isEqualTo(HttpStatus.OK);
+		assertThat(get("/simple", "made-up-2").getStatusCode()).isEqualTo(HttpStatus.OK);
+		assertThat(get("/simple", "made-up-3").getStatusCode()).isEqualTo(HttpStatus.TOO_MANY_REQUESTS);
+	}
+
+	// Test the bucket itself => burst, refill, cost and the wait it reports
+	@Test
+	public void testTokenBucket() {
+		ClientRateLimiter limiter = new ClientRateLimiter(10, 5);
+		long now = 0;
+		assertThat(limiter.tryAcquire("a", 5, now)).isZero();
+		//empty => the next token is a tenth of a second away
+		assertThat(limiter.tryAcquire("a", 1, now)).isEqualTo(SECOND / 10);
+		assertThat(limiter.tryAcquire("b", 1, now)).isZero();
+
+		now += SECOND / 10;
+		assertThat(limiter.tryAcquire("a", 1, now)).isZero();
+		assertThat(limiter.tryAcquire("a", 2, now)).isEqualTo(2 * SECOND / 10);
+		//idle for long => full again, not more
+		now += 10 * SECOND;
+		assertThat(limiter.tryAcquire("a", 5, now)).isZero();
+		assertThat(limiter.tryAcquire("a", 1, now)).isPositive();
+	}
+
+	// Test AIMD => slow responses shrink the limit once per window down to its minimum, fast ones under load grow it back
+	@Test
+	public void testAdaptiveConcurrencyLimit() {
+		AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(10, 2, 20, SECOND);
+		long now = 0;
+		for (int i = 0; i < 10; i++) {
+			assertThat(limit.tryAcquire()).isTrue();
+		}
+		assertThat(limit.tryAcquire()).isFalse();
+
+		//all ten slow at once => one decrease, not ten
+		for (int i = 0; i < 10; i++) {
+			limit.release(2 * SECOND, now);
+		}
+		assertThat(limit.getLimit()).isEqualTo(9);
+		assertThat(limit.getInFlight()).isZero();
+
+		//still within the window => no further decrease
+		assertThat(limit.tryAcquire()).isTrue();
+		limit.release(2 * SECOND, now + SECOND / 2);
+		assertThat(limit.getLimit()).isEqualTo(9);
+
+		//slow in every following window => down to the minimum
+		for (int i = 0; i < 20; i++) {
+			now += SECOND;
+			assertThat(limit.tryAcquire()).isTrue();
+			limit.release(2 * SECOND, now);
+		}
+		assertThat(limit.getLimit()).isEqualTo(2);
+
+		assertThat(limit.tryAcquire()).isTrue();
+		assertThat(limit.tryAcquire()).isTrue();
+		assertThat(limit.tryAcquire()).isFalse();
+		//the first release saw the limit fully used => +1, the second only one of three in flight => unchanged
+		limit.release(SECOND / 100, now);
+		limit.release(SECOND / 100, now);
+		assertThat(limit.getLimit()).isEqualTo(3);
+	}
+
+	private ResponseEntity<String> get(String url, String apiKey) {
+		HttpHeaders headers = new HttpHeaders();
+		headers.set("X-API-Key", apiKey);
+		return restTemplate.exchange(url, HttpMethod.GET, new HttpEntity<>(headers), String.class);
+	}
+}